@@ -0,0 +1,16 @@
+@echo off
+rem JMH-бенчмарки. Jar-файлы JMH должны лежать в bench\lib (bench.sh скачивает их автоматически)
+set ROOT=%~dp0
+set LIB=%ROOT%bench\lib
+set OUT=%ROOT%bench\out
+set WORK=%ROOT%bench\work
+if exist "%OUT%" rmdir /s /q "%OUT%"
+mkdir "%OUT%"
+if not exist "%WORK%" mkdir "%WORK%"
+setlocal enabledelayedexpansion
+set CP=
+for %%j in ("%LIB%\*.jar") do set CP=!CP!;%%j
+dir /s /b "%ROOT%src\*.java" "%ROOT%bench\src\*.java" > "%ROOT%.bench-sources"
+javac -encoding UTF-8 -cp "!CP!" -processorpath "!CP!" -d "%OUT%" @"%ROOT%.bench-sources"
+cd /d "%WORK%"
+java -cp "%OUT%;%LIB%\*" org.openjdk.jmh.Main -prof gc -rf json -rff "%WORK%\jmh-result.json" %*
@@ -0,0 +1,26 @@
+#!/usr/bin/env bash
+# JMH-бенчмарки. Аргументы передаются JMH, например: ./bench.sh Dispatch -p rooms=10
+set -euo pipefail
+ROOT="$(cd "$(dirname "$0")" && pwd)"
+LIB="$ROOT/bench/lib"
+OUT="$ROOT/bench/out"
+WORK="$ROOT/bench/work"
+MAVEN="https://repo1.maven.org/maven2"
+JARS=(
+  "org/openjdk/jmh/jmh-core/1.37/jmh-core-1.37.jar"
+  "org/openjdk/jmh/jmh-generator-annprocess/1.37/jmh-generator-annprocess-1.37.jar"
+  "net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar"
+  "org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar"
+)
+mkdir -p "$LIB" "$WORK"
+for jar in "${JARS[@]}"; do
+  [ -f "$LIB/$(basename "$jar")" ] || curl -fsSL -o "$LIB/$(basename "$jar")" "$MAVEN/$jar"
+done
+rm -rf "$OUT"
+mkdir -p "$OUT"
+find "$ROOT/src" "$ROOT/bench/src" -name "*.java" > "$ROOT/.bench-sources"
+CP="$(printf '%s:' "$LIB"/*.jar)"
+javac -encoding UTF-8 -cp "$CP" -processorpath "$CP" -d "$OUT" @"$ROOT/.bench-sources"
+cd "$WORK"
+# -prof gc: выделение памяти на операцию (gc.alloc.rate.norm)
+java -cp "$OUT:$LIB/*" org.openjdk.jmh.Main -prof gc -rf json -rff "$WORK/jmh-result.json" "$@"
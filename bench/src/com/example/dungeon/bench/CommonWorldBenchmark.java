@@ -0,0 +1,131 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.model.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// Пропускная способность CommonWorld в зависимости от числа занятых комнат. threads игроков-потоков по кругу
+// берут зелье и кладут его обратно, бьют голема на 1 HP и смотрят комнату; игрок i играет в комнате i % rooms,
+// rooms = 1, 2, 4, ... threads. Печатаются операции в микросекунду на все потоки, ускорение относительно
+// rooms = 1 и сколько раз на 1000 операций поток ждал чужой монитор.
+//   rooms — у каждой комнаты своя блокировка: с ростом rooms ожиданий меньше, а пропускная способность растёт,
+//           пока занятых комнат не больше ядер (на машине с одним ядром роста быть не может)
+//   global — те же комнаты, но каждая операция ещё и под одной общей блокировкой, как с монитором на весь мир:
+//           роста с rooms нет
+// После каждого замера проверяется, что ни одно изменение не потеряно: зелий в каждой комнате столько же,
+// сколько было, а HP голема меньше ровно на число засчитанных ему ударов.
+// Не JMH, каждый замер длится seconds секунд:
+//   java -cp bench/out com.example.dungeon.bench.CommonWorldBenchmark [секунд на замер, по умолчанию 2] [потоков, по умолчанию max(4, ядер)]
+public class CommonWorldBenchmark {
+    private static final int POTIONS = 8;
+    private static final Object GLOBAL = new Object();
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 2;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        System.out.printf("ядер: %d  потоков: %d%n", Runtime.getRuntime().availableProcessors(), threads);
+        run(false, threads, threads, seconds, -1);// прогрев JIT, не печатается
+        run(true, threads, threads, seconds, -1);
+        for (boolean global : new boolean[]{false, true}) {
+            double single = 0;
+            for (int rooms = 1; rooms <= threads; rooms *= 2) {
+                double rate = run(global, threads, rooms, seconds, single);
+                if (rooms == 1) single = rate;
+            }
+        }
+    }
+
+    // Операций в микросекунду; single — результат при rooms = 1 (0 — это он и есть, -1 — прогрев без печати)
+    private static double run(boolean global, int threads, int rooms, long seconds, double single) throws Exception {
+        Room[] sites = world(rooms);
+        long[] strikes = new long[rooms];
+        LongAdder ops = new LongAdder(), blocked = new LongAdder();
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        CountDownLatch go = new CountDownLatch(1);
+        long[] window = new long[2];// начало и конец замера; потоки читают их после go
+        List<Thread> players = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Room room = sites[i % rooms];
+            int slot = i % rooms;
+            players.add(Thread.ofPlatform().start(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                long startBlocked = mx.getThreadInfo(Thread.currentThread().threadId()).getBlockedCount();
+                long n = 0, hits = 0;
+                while (System.nanoTime() < window[1]) {
+                    if (global) {
+                        synchronized (GLOBAL) {
+                            hits += play(room);
+                        }
+                    } else {
+                        hits += play(room);
+                    }
+                    n += 3;
+                }
+                ops.add(n);
+                blocked.add(mx.getThreadInfo(Thread.currentThread().threadId()).getBlockedCount() - startBlocked);
+                synchronized (strikes) {
+                    strikes[slot] += hits;
+                }
+            }));
+        }
+        window[0] = System.nanoTime();
+        window[1] = window[0] + seconds * 1_000_000_000L;
+        go.countDown();
+        for (Thread t : players) t.join();
+        double rate = ops.sum() / ((System.nanoTime() - window[0]) / 1e3);
+        if (single < 0) return rate;
+        System.out.printf("%-6s комнат: %2d  операций/мкс: %6.2f  x%.2f  ожиданий монитора на 1000 операций: %7.2f  %s%n",
+                global ? "global" : "rooms", rooms, rate, single == 0 ? 1 : rate / single,
+                blocked.sum() * 1000.0 / Math.max(1, ops.sum()), check(sites, strikes));
+        return rate;
+    }
+
+    // Одна итерация игрока: take и drop, удар по голему, look; 1 — удар засчитан
+    private static int play(Room room) {
+        Item potion = room.findItem("Малое зелье");
+        if (potion != null && room.removeItem(potion)) room.addItem(potion);
+        int hit = room.strikeMonster(room.getMonster(), 1) > 0 ? 1 : 0;
+        room.describe();
+        return hit;
+    }
+
+    // Цепочка из rooms комнат с зельями и бесконечно живучим големом
+    private static Room[] world(int rooms) {
+        Room[] base = new Room[rooms];
+        for (int i = 0; i < rooms; i++) {
+            base[i] = new Room("Комната " + i, "Синтетическая комната номер " + i + ".");
+            for (int j = 0; j < POTIONS; j++) base[i].addItem(ItemCatalog.SMALL_POTION);
+            base[i].setMonster(new Monster("Голем", 1, Integer.MAX_VALUE));
+            if (i > 0) {
+                base[i - 1].setNeighbor("east", base[i]);
+                base[i].setNeighbor("west", base[i - 1]);
+            }
+        }
+        Room[] sites = new Room[rooms];
+        Room site = new CommonWorld(base[0]).start();
+        for (int i = 0; i < rooms; i++, site = site.getNeighbors().get("east")) sites[i] = site;
+        return sites;
+    }
+
+    private static String check(Room[] sites, long[] strikes) {
+        for (int i = 0; i < sites.length; i++) {
+            int[] potions = new int[1];
+            sites[i].forEachItemStack((item, count) -> potions[0] += count);
+            long hp = sites[i].getMonster().getHp();
+            if (potions[0] != POTIONS || hp != Integer.MAX_VALUE - strikes[i]) {
+                return "ПОТЕРЯНО в комнате " + i + ": зелий " + potions[0] + ", HP голема " + hp
+                        + " вместо " + (Integer.MAX_VALUE - strikes[i]);
+            }
+        }
+        return "изменения не потеряны";
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.core.CommandLine;
+import com.example.dungeon.core.Game;
+import com.example.dungeon.model.GameState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Разбор строки и диспетчеризация команды — то, что Game.play() делает для каждой строки ввода
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+    @Param({"10", "100000"})
+    public int rooms;
+
+    private Game game;
+    private GameState state;
+    private final CommandLine line = new CommandLine();// как в Game.play(): один буфер на сессию
+
+    @Setup
+    public void setup() {
+        game = new Game();
+        state = Worlds.chain(rooms, 2);
+    }
+
+    private void run(String input) {
+        game.execute(state, line.parse(input));
+    }
+
+    @Benchmark
+    public void look() {
+        run("look");
+    }
+
+    @Benchmark
+    public void moveThereAndBack() {
+        run("move north");
+        run("move south");
+    }
+
+    @Benchmark
+    public void aliasThereAndBack() {
+        run("n");
+        run("s");
+    }
+
+    @Benchmark
+    public void unknownCommand() {
+        run("dance wildly now");
+    }
+
+    @Benchmark
+    public void gcStats() {
+        run("gc-stats");
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.model.CompactWorld;
+import com.example.dungeon.model.Navigator;
+import com.example.dungeon.model.Room;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Поиск пути goto на сетке side x side (1000 x 1000 = 1M комнат); SampleTime даёт p50/p99.
+// cold — кэш маршрутов сброшен перед каждым запросом, cached — повторный запрос того же маршрута
+// Мир — CompactWorld, поэтому маршрут ищется по номерам комнат (Navigator.Ids)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class GotoBenchmark {
+    @Param({"1000"})
+    public int side;
+
+    private Navigator nav;
+    private Room[] starts;
+    private int next;
+
+    @Setup
+    public void setup() {
+        CompactWorld w = CompactWorld.grid(side, side);
+        // 64 уникальных цели по диагонали, старты — в противоположных углах их квадрантов
+        starts = new Room[64];
+        for (int i = 0; i < starts.length; i++) {
+            int x = (int) ((long) i * (side - 1) / starts.length);
+            w.setName(x * side + x, "Цель " + i);
+            starts[i] = w.room((side - 1 - x) * side + Math.min(side - 1, x + side / 8));
+        }
+        nav = new Navigator(w.room(0));
+    }
+
+    @Benchmark
+    public List<String> cold() {
+        int i = next++ & 63;
+        nav.invalidateRoutes();
+        return nav.route(starts[i], "Цель " + i);
+    }
+
+    @Benchmark
+    public List<String> cached() {
+        int i = next++ & 63;
+        return nav.route(starts[i], "Цель " + i);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.model.*;
+
+// Байт на версию истории undo (WorldHistory) против глубокой копии мира на каждый снимок.
+// Мир — сетка side x side, как в SessionFootprint. Каждый ход — шаг по диагонали, взять зелье, добить крысу,
+// затем commit; все versions версий остаются в истории. Заодно — среднее время commit.
+// Не JMH, по одному запуску JVM:
+//   java -Xmx2g -cp bench/out com.example.dungeon.bench.HistoryFootprint 100 10000
+public class HistoryFootprint {
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int versions = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        long before = used();
+        GameState state = new GameState();
+        state.setOut(Worlds.discard());
+        state.setPlayer(new Player("Bench", 1_000_000, 5));
+        state.setCurrent(grid(side));
+        long world = used() - before;
+        WorldHistory history = WorldHistory.attach(state, versions);
+        long attached = used();
+        long nanos = 0;
+        String[] dirs = {"east", "south"};
+        for (int i = 0; i < versions; i++) {
+            Room room = state.getCurrent();
+            Room next = room.getNeighbors().get(dirs[i & 1]);
+            if (next == null) next = room.getNeighbors().get(dirs[(i + 1) & 1]);
+            if (next == null) next = room.getNeighbors().get("west");
+            state.setCurrent(next);
+            Item potion = next.findItem("Малое зелье");
+            if (potion != null && next.removeItem(potion)) state.getPlayer().getInventory().add(potion);
+            Monster m = next.getMonster();
+            if (m != null) next.strikeMonster(m, m.getHp());
+            state.addScore(1);
+            long start = System.nanoTime();
+            history.commit(state);
+            nanos += System.nanoTime() - start;
+        }
+        long after = used();
+        System.out.printf("Мир %dx%d: %,d байт — столько стоила бы глубокая копия на каждую версию%n", side, side, world);
+        System.out.printf("Версий: %,d  история: %,d байт  (%,.0f байт/версия)  commit: %.2f мкс, отличается комнат: %,d%n",
+                history.versions(), after - attached, (after - attached) / (double) history.versions(),
+                nanos / 1e3 / versions, history.changedRooms());
+    }
+
+    private static Room grid(int side) {
+        Room[] grid = new Room[side * side];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = new Room("Коридор", "Сырые каменные стены.");
+            if (i % 7 == 3) grid[i].addItem(ItemCatalog.SMALL_POTION);
+            if (i % 11 == 5) grid[i].setMonster(new Monster("Крыса", 1, 4, null));
+            if (i % side > 0) {
+                grid[i].setNeighbor("west", grid[i - 1]);
+                grid[i - 1].setNeighbor("east", grid[i]);
+            }
+            if (i >= side) {
+                grid[i].setNeighbor("north", grid[i - side]);
+                grid[i - side].setNeighbor("south", grid[i]);
+            }
+        }
+        return grid[0];
+    }
+
+    private static long used() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.core.Game;
+import com.example.dungeon.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// inventory и поиск предмета в take/use на инвентаре из size предметов (индексы ItemContainer)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InventoryBenchmark {
+    @Param({"10", "100000"})
+    public int size;
+
+    private Game game;
+    private GameState state;
+
+    @Setup
+    public void setup() {
+        game = new Game();
+        state = Worlds.chain(2, size);
+        Worlds.fillInventory(state.getPlayer(), size);
+        // искомые предметы добавлены последними — худший случай для прежнего линейного поиска
+        state.getCurrent().addItem(new Potion("Цель", 1));
+        state.getPlayer().getInventory().add(new Key("Ключ-цель"));
+    }
+
+    @Benchmark
+    public void inventory() {
+        game.execute(state, "inventory");
+    }
+
+    @Benchmark
+    public void takeLast() {
+        game.execute(state, "take Цель");
+        // возвращаем предмет на место, чтобы каждая итерация искала его заново
+        ItemContainer inv = state.getPlayer().getInventory();
+        Item item = inv.find("Цель");
+        inv.remove(item);
+        state.getCurrent().addItem(item);
+    }
+
+    @Benchmark
+    public void useLast() {
+        // Key.apply не удаляет ключ из инвентаря, так что состояние не меняется
+        game.execute(state, "use Ключ-цель");
+    }
+}
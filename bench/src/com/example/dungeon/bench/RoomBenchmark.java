@@ -0,0 +1,42 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.model.Item;
+import com.example.dungeon.model.Room;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Room.describe() вызывается на каждый look и каждый успешный move.
+// describe — повторный осмотр неизменной комнаты (готовый текст из кэша),
+// describeAfterChange — в комнате что-то взяли и положили обратно, текст строится заново
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RoomBenchmark {
+    @Param({"1", "1000"})
+    public int items;
+
+    private Room room;
+    private Item item;
+
+    @Setup
+    public void setup() {
+        room = Worlds.chain(3, items).getCurrent().getNeighbors().get("north");
+        item = room.getItems().getFirst();
+    }
+
+    @Benchmark
+    public String describe() {
+        return room.describe();
+    }
+
+    @Benchmark
+    public String describeAfterChange() {
+        room.removeItem(item);
+        room.addItem(item);
+        return room.describe();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.model.CompactWorld;
+import com.example.dungeon.model.ItemCatalog;
+import com.example.dungeon.model.Potion;
+import com.example.dungeon.model.Room;
+
+// Байт на комнату: обычные Room против CompactWorld на сетке side x side с предметом в каждой десятой комнате.
+// Не JMH, по одному варианту на запуск JVM, чтобы замеры не мешали друг другу:
+//   java -Xmx2g -cp bench/out com.example.dungeon.bench.RoomFootprint classic 1000000
+//   java -Xmx2g -cp bench/out com.example.dungeon.bench.RoomFootprint compact 10000000
+public class RoomFootprint {
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "compact";
+        int rooms = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int side = (int) Math.ceil(Math.sqrt(rooms));
+        if (mode.equals("classic")) report("Room", rooms, () -> classic(side, rooms));
+        else report("CompactWorld", rooms, () -> compact(side, rooms));
+    }
+
+    private static void report(String label, int rooms, java.util.function.Supplier<Object> build) {
+        long before = used();
+        long start = System.nanoTime();
+        Object world = build.get();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long after = used();
+        System.out.printf("%-12s комнат: %,d  память: %,d байт  (%.1f байт/комната)  построено за %d мс%n",
+                label, rooms, after - before, (after - before) / (double) rooms, millis);
+        if (world.hashCode() == 42) System.out.print("");// держим мир живым до замера
+    }
+
+    private static Object classic(int side, int rooms) {
+        Room[] grid = new Room[rooms];
+        Potion potion = ItemCatalog.SMALL_POTION;
+        for (int i = 0; i < rooms; i++) {
+            grid[i] = new Room("Коридор", "Сырые каменные стены.");
+            if (i % 10 == 0) grid[i].addItem(potion);
+            if (i % side > 0) {
+                grid[i].setNeighbor("west", grid[i - 1]);
+                grid[i - 1].setNeighbor("east", grid[i]);
+            }
+            if (i >= side) {
+                grid[i].setNeighbor("north", grid[i - side]);
+                grid[i - side].setNeighbor("south", grid[i]);
+            }
+        }
+        return grid;
+    }
+
+    private static Object compact(int side, int rooms) {
+        CompactWorld w = new CompactWorld(rooms);
+        Potion potion = ItemCatalog.SMALL_POTION;
+        for (int i = 0; i < rooms; i++) {
+            int id = w.addRoom("Коридор", "Сырые каменные стены.");
+            if (i % 10 == 0) w.items(id).add(potion);
+            if (i % side > 0) w.link(id, CompactWorld.WEST, id - 1);
+            if (i >= side) w.link(id, CompactWorld.NORTH, id - side);
+        }
+        return w;
+    }
+
+    private static long used() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
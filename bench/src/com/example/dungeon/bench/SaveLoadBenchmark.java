@@ -0,0 +1,65 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.core.SaveLoad;
+import com.example.dungeon.model.GameState;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+// SaveLoad пишет save.txt и scores.csv в текущий каталог; bench.sh запускает JMH из bench/work
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SaveLoadBenchmark {
+    // число комнат, размер инвентаря и число строк в scores.csv
+    @Param({"10", "100000"})
+    public int size;
+
+    private GameState state;
+    private PrintStream out;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        state = Worlds.chain(size, 1);
+        Worlds.fillInventory(state.getPlayer(), size);
+        out = Worlds.discard();
+        // save дописывает строку в scores.csv, поэтому пересоздаём таблицу на каждую итерацию
+        try (BufferedWriter w = Files.newBufferedWriter(Paths.get("scores.csv"))) {
+            w.write("ts,player,score");
+            w.newLine();
+            for (int i = 0; i < size; i++) {
+                w.write("2025-01-01T00:00:00," + "Игрок" + (i % 1000) + "," + (i * 7919 % 10007));
+                w.newLine();
+            }
+        }
+        SaveLoad.save(state);
+    }
+
+    @Benchmark
+    public void save() {
+        SaveLoad.save(state);
+    }
+
+    @Benchmark
+    public void load() {
+        SaveLoad.load(state);
+    }
+
+    @Benchmark
+    public void printScores() {
+        SaveLoad.printScores(out);
+    }
+
+    @Benchmark
+    public void playerScore() {
+        SaveLoad.printPlayerScore(out, "Игрок500");
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.core.ScoreWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Строки очков при 1, 16 и 1000 одновременных производителях (виртуальные потоки, как сессии сервера)
+// с заданным общим темпом: каждый производитель добавляет строку по своему расписанию (rate / producers
+// строк в секунду), а не так быстро, как может, — иначе очередь ScoreWriter растёт без предела и замер
+// показывает только её. Печатается достигнутый темп и задержка строки до записи: p50/p99/максимум.
+//   old   — как было: под общей блокировкой Files.exists, открыть scores.csv на дописывание, строка, закрыть;
+//           задержка — от срока по расписанию до возврата из вызова (опоздание из-за очереди на блокировке тоже)
+//   group — ScoreWriter: очередь без блокировок и одна запись на группу раз в 20 мс; задержка — от append
+//           до write группы (ScoreWriter сообщает её в миллисекундах)
+//   fsync — то же с force после каждой группы; задержка — до конца force
+// Не JMH: каждый замер длится seconds секунд и заканчивается тем, что всё добавленное записано в файл.
+//   java -cp bench/out com.example.dungeon.bench.ScoreAppendBenchmark [секунд на замер, по умолчанию 3] [строк/с, по умолчанию 20000]
+public class ScoreAppendBenchmark {
+    private static final int[] PRODUCERS = {1, 16, 1000};
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 3;
+        long rate = args.length > 1 ? Long.parseLong(args[1]) : 20_000;
+        Path dir = Files.createTempDirectory("scores");
+        try {
+            for (String mode : List.of("old", "group", "fsync")) {
+                for (int producers : PRODUCERS) {
+                    Path csv = dir.resolve(mode + "-" + producers + ".csv");
+                    run(mode, producers, seconds, rate, csv);
+                    Files.delete(csv);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void run(String mode, int producers, long seconds, long rate, Path csv) throws Exception {
+        Latencies latencies = new Latencies();
+        ScoreWriter writer = mode.equals("old") ? null
+                : new ScoreWriter(csv, 20, mode.equals("fsync"), ms -> latencies.add(ms * 1_000_000));
+        LongAdder appended = new LongAdder();
+        long interval = Math.max(1, producers * 1_000_000_000L / rate);// наносекунд между строками одного производителя
+        long start = System.nanoTime(), end = start + seconds * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>(producers);
+        for (int p = 0; p < producers; p++) {
+            String player = "Игрок" + p;
+            long first = start + interval * p / producers;// производители сдвинуты, чтобы не добавлять строки разом
+            threads.add(Thread.ofVirtual().start(() -> {
+                long due = first;
+                for (int score = 0; due < end; score++, due += interval) {
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) LockSupport.parkNanos(wait);
+                    if (writer != null) {
+                        writer.append(player, score);
+                    } else {
+                        oldAppend(csv, player, score);
+                        latencies.add(System.nanoTime() - due);
+                    }
+                    appended.increment();
+                }
+            }));
+        }
+        for (Thread t : threads) t.join();
+        if (writer != null) writer.close();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long lines = Files.lines(csv).count() - 1;
+        System.out.printf("%-5s производителей: %4d  строк: %,9d  (%,.0f строк/с)  до записи: p50 %s  p99 %s  макс %s%s%n",
+                mode, producers, lines, lines / elapsed, ms(latencies.percentile(0.5)), ms(latencies.percentile(0.99)),
+                ms(latencies.percentile(1)), lines == appended.sum() ? "" : "  ПОТЕРЯНО " + (appended.sum() - lines));
+    }
+
+    private static String ms(long nanos) {
+        return String.format("%.2f мс", nanos / 1e6);
+    }
+
+    // Все задержки замера, наносекунды; пишут производители (old) или поток ScoreWriter
+    private static final class Latencies {
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void add(long nanos) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+        }
+
+        synchronized long percentile(double q) {
+            if (size == 0) return 0;
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(size - 1, Math.max(0, Math.ceil(q * size) - 1))];
+        }
+    }
+
+    // Прежний SaveLoad.writeScore (save выполнялся под synchronized)
+    private static synchronized void oldAppend(Path csv, String player, int score) {
+        try {
+            boolean header = !Files.exists(csv);
+            try (BufferedWriter w = Files.newBufferedWriter(csv, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (header) {
+                    w.write("ts,player,score");
+                    w.newLine();
+                }
+                w.write(LocalDateTime.now() + "," + player + "," + score);
+                w.newLine();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Байт на сессию: у каждой сессии своя копия мира (copy) против слоёв поверх одного SharedWorld (shared).
+// Мир — сетка обычных Room side x side, зелье в каждой седьмой комнате, крыса в каждой одиннадцатой.
+// Каждая сессия делает steps шагов по диагонали (east, south, ...), подбирает зелья и убивает крыс по пути.
+// Не JMH, по одному варианту на запуск JVM:
+//   java -Xmx2g -cp bench/out com.example.dungeon.bench.SessionFootprint copy 200 100 50
+//   java -Xmx2g -cp bench/out com.example.dungeon.bench.SessionFootprint shared 10000 100 50
+public class SessionFootprint {
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "shared";
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int side = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int steps = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+        List<Room> live = new ArrayList<>(sessions);
+        long before = used();
+        SharedWorld shared = null;
+        if (mode.equals("shared")) {
+            shared = new SharedWorld(grid(side));
+            long base = used() - before;
+            System.out.printf("Общий мир %dx%d: %,d байт%n", side, side, base);
+            before += base;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            Room room = shared != null ? shared.newSession() : grid(side);
+            live.add(room);
+            play(room, steps);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long after = used();
+        System.out.printf("%-6s сессий: %,d  память: %,d байт  (%,.0f байт/сессия)  за %d мс%n",
+                mode, sessions, after - before, (after - before) / (double) sessions, millis);
+        if (live.hashCode() == 42) System.out.print("");// держим сессии живыми до замера
+    }
+
+    private static void play(Room room, int steps) {
+        for (int i = 0; i < steps && room != null; i++) {
+            Item potion = room.findItem("Малое зелье");
+            if (potion != null) room.removeItem(potion);
+            if (room.getMonster() != null) room.setMonster(null);
+            room = room.getNeighbors().get(i % 2 == 0 ? "east" : "south");
+        }
+    }
+
+    private static Room grid(int side) {
+        Room[] grid = new Room[side * side];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = new Room("Коридор", "Сырые каменные стены.");
+            if (i % 7 == 3) grid[i].addItem(ItemCatalog.SMALL_POTION);
+            if (i % 11 == 5) grid[i].setMonster(new Monster("Крыса", 1, 4, null));
+            if (i % side > 0) {
+                grid[i].setNeighbor("west", grid[i - 1]);
+                grid[i - 1].setNeighbor("east", grid[i]);
+            }
+            if (i >= side) {
+                grid[i].setNeighbor("north", grid[i - side]);
+                grid[i - side].setNeighbor("south", grid[i]);
+            }
+        }
+        return grid[0];
+    }
+
+    private static long used() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
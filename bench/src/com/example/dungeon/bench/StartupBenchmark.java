@@ -0,0 +1,76 @@
+package com.example.dungeon.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Время от запуска JVM до первого приглашения "> " консольной игры и до ответа на первую команду (look, второе
+// приглашение). Не JMH: каждый замер — новый процесс java с тем же classpath, ввод подаётся заранее,
+// как если бы игрок печатал мгновенно.
+//   prompt — как раньше: вопрос об имени, мир строится по описанию (StarterWorld)
+//   name   — тот же мир, но имя задано --name и игра начинается сразу
+//   generate — мир side x side строится при запуске (--generate side), --name
+//   big-image — тот же мир из образа (--generate side --make-image один раз перед замерами, потом --image), --name
+//   java -cp bench/out com.example.dungeon.bench.StartupBenchmark [запусков, по умолчанию 10] [side, по умолчанию 1000]
+public class StartupBenchmark {
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String side = args.length > 1 ? args[1] : "1000";
+        Path big = Files.createTempFile("dungeon-" + side, ".img");
+        try {
+            run(List.of("--generate", side, "--make-image", big.toString()), "");
+            report("prompt", runs, List.of(), "Герой\nlook\nexit\n");
+            report("name", runs, List.of("--name", "Герой"), "look\nexit\n");
+            report("generate", runs, List.of("--generate", side, "--name", "Герой"), "look\nexit\n");
+            report("big-image", runs, List.of("--image", big.toString(), "--name", "Герой"), "look\nexit\n");
+        } finally {
+            Files.deleteIfExists(big);
+        }
+    }
+
+    private static void report(String label, int runs, List<String> args, String input) throws Exception {
+        run(args, input);// прогрев файлового кэша
+        long[] prompt = new long[runs], answer = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long[] t = run(args, input);
+            prompt[i] = t[0] / 1_000_000;
+            answer[i] = t[1] / 1_000_000;
+        }
+        Arrays.sort(prompt);
+        Arrays.sort(answer);
+        System.out.printf("%-9s до приглашения: мин %d мс, медиана %d мс; до ответа на первую команду: мин %d мс, медиана %d мс (%d запусков)%n",
+                label, prompt[0], prompt[runs / 2], answer[0], answer[runs / 2], runs);
+    }
+
+    // Наносекунды от старта процесса до первого и второго "> " в его выводе (или до конца вывода)
+    private static long[] run(List<String> args, String input) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(ProcessHandle.current().info().command().orElse("java"));
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add("com.example.dungeon.Main");
+        cmd.addAll(args);
+        long start = System.nanoTime();
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        try (OutputStream in = p.getOutputStream()) {
+            in.write(input.getBytes(StandardCharsets.UTF_8));
+        }
+        long[] elapsed = new long[2];
+        try (InputStream out = p.getInputStream()) {
+            for (int i = 0; i < elapsed.length; i++) {
+                int prev = '\n', c;
+                while ((c = out.read()) >= 0 && !(prev == '>' && c == ' ')) prev = c;
+                elapsed[i] = System.nanoTime() - start;
+            }
+            out.transferTo(OutputStream.nullOutputStream());
+        }
+        p.waitFor();
+        return elapsed;
+    }
+}
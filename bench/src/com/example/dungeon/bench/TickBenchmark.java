@@ -0,0 +1,65 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.model.TimingWheel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Цена тика мира в зависимости от числа сущностей. У каждой сущности периодический таймер, как у WorldLife:
+// короткие периоды (регенерация, блуждание) у большинства, длинные (появление предметов) у каждой восьмой.
+// tick — один тик: работа пропорциональна числу сработавших таймеров, а не всех стоящих в колесе;
+// reschedule — перестановка одного таймера (cancel + schedule)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TickBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int entities;
+
+    private TimingWheel<int[]> wheel;
+    private final int[] fired = new int[1];
+    private Periodic[] timers;
+    private int next;
+
+    static final class Periodic extends TimingWheel.Timer<int[]> {
+        final int period;
+
+        Periodic(int period) {
+            this.period = period;
+        }
+
+        @Override
+        protected void fire(int[] fired, TimingWheel<int[]> wheel) {
+            fired[0]++;
+            wheel.schedule(this, period);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        wheel = new TimingWheel<>();
+        timers = new Periodic[entities];
+        for (int i = 0; i < entities; i++) {
+            int period = i % 8 == 0 ? 600 : i % 2 == 0 ? 5 : 20;
+            timers[i] = new Periodic(period);
+            wheel.schedule(timers[i], 1 + i % period);
+        }
+    }
+
+    @Benchmark
+    public int tick() {
+        wheel.tick(fired);
+        return fired[0];
+    }
+
+    @Benchmark
+    public long reschedule() {
+        Periodic t = timers[next];
+        next = next + 1 == timers.length ? 0 : next + 1;
+        wheel.schedule(t, 1 + (next & 1023));
+        return t.deadline();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.model.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+
+// Время WorldGenerator на мире side x side при 1, 2 и 4 потоках fork-join и отпечаток каждого мира
+// (названия, проходы, замки, предметы, монстры): при одном seed отпечатки должны совпасть.
+// Для последнего мира — проверка проходимости: обход от старта, который не входит в запертые комнаты,
+// подбирает ключи и тратит по ключу на каждую открытую дверь, должен обойти все комнаты.
+// Не JMH, по runs замеров на каждое число потоков:
+//   java -Xmx2g -cp bench/out com.example.dungeon.bench.WorldGenBenchmark 1000 5
+public class WorldGenBenchmark {
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        WorldGenerator.Config config = WorldGenerator.Config.square(side);
+        WorldGenerator.Generated last = null;
+        for (int threads : new int[]{1, 2, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < runs; i++) {
+                last = null;// прежний мир не должен занимать память во время замера
+                long start = System.nanoTime();
+                last = WorldGenerator.generate(config, seed, pool);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            pool.shutdown();
+            System.out.printf("потоков: %d  комнат: %,d  лучшее время: %d мс  отпечаток: %016x%n",
+                    threads, last.world().size(), best / 1_000_000, fingerprint(last.world()));
+        }
+        System.out.printf("регионов: %d  запертых ворот: %d  монстров: %,d  предметов: %,d  %s%n", last.regions(),
+                last.lockedDoors(), last.monsters(), last.items(), walk(last.world()));
+    }
+
+    private static long fingerprint(CompactWorld w) {
+        long h = 0;
+        for (int id = 0; id < w.size(); id++) {
+            h = h * 31 + w.name(id).hashCode();
+            h = h * 31 + w.description(id).hashCode();
+            for (int d = 0; d < 4; d++) h = h * 31 + w.exit(id, d);
+            h = h * 31 + (w.isLocked(id) ? 1 : 0);
+            for (Item item : w.items(id)) h = h * 31 + item.getId();
+            Monster m = w.monster(id);
+            if (m != null) {
+                h = h * 31 + m.getName().hashCode();
+                h = h * 31 + m.getLevel() * 1009L + m.getHp();
+                h = h * 31 + (m.getLoot() == null ? -1 : m.getLoot().getId());
+            }
+        }
+        return h;
+    }
+
+    // Обход игрока: запертая комната ждёт в очереди, пока не найдётся неистраченный ключ
+    private static String walk(CompactWorld w) {
+        boolean[] seen = new boolean[w.size()];
+        Deque<Integer> open = new ArrayDeque<>(), locked = new ArrayDeque<>();
+        int keys = 0, reached = 0;
+        seen[0] = true;
+        open.add(0);
+        while (!open.isEmpty() || keys > 0 && !locked.isEmpty()) {
+            int id;
+            if (!open.isEmpty()) {
+                id = open.poll();
+            } else {
+                id = locked.poll();
+                keys--;
+            }
+            reached++;
+            for (Item item : w.items(id)) if (item instanceof Key) keys++;
+            for (int d = 0; d < 4; d++) {
+                int to = w.exit(id, d);
+                if (to < 0 || seen[to]) continue;
+                seen[to] = true;
+                (w.isLocked(to) ? locked : open).add(to);
+            }
+        }
+        return reached == w.size() ? "проходим: все комнаты достижимы" : "НЕ ПРОХОДИМ: достижимо " + reached;
+    }
+}
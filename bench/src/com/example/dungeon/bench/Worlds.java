@@ -0,0 +1,53 @@
+package com.example.dungeon.bench;
+
+import com.example.dungeon.core.OutputSinks;
+import com.example.dungeon.model.*;
+
+import java.io.PrintStream;
+
+// Синтетические миры и инвентари для бенчмарков
+final class Worlds {
+    static final String[] DIRS = {"north", "south", "east", "west"};
+
+    // Вывод, который никуда не пишет: меряем движок, а не терминал
+    static PrintStream discard() {
+        return OutputSinks.discard();
+    }
+
+    // Цепочка из rooms комнат north/south; в каждой комнате items предметов
+    static GameState chain(int rooms, int items) {
+        GameState s = new GameState();
+        s.setOut(discard());
+        s.setPlayer(new Player("Bench", 1_000_000, 5));
+        Room prev = null;
+        Room first = null;
+        for (int i = 0; i < rooms; i++) {
+            Room r = new Room("Комната " + i, "Синтетическая комната номер " + i + ".");
+            for (int j = 0; j < items; j++) r.addItem(item(j));
+            if (prev != null) {
+                prev.setNeighbor("north", r);
+                r.setNeighbor("south", prev);
+            } else {
+                first = r;
+            }
+            prev = r;
+        }
+        s.setCurrent(first);
+        return s;
+    }
+
+    static void fillInventory(Player p, int n) {
+        for (int i = 0; i < n; i++) p.getInventory().add(item(i));
+    }
+
+    static Item item(int i) {
+        return switch (i % 3) {
+            case 0 -> new Potion("Зелье " + i, 5);
+            case 1 -> new Weapon("Меч " + i, 3);
+            default -> new Key("Ключ " + i);
+        };
+    }
+
+    private Worlds() {
+    }
+}
@@ -1,4 +1,4 @@
 #!/usr/bin/env bash
 set -euo pipefail
 ROOT="$(cd "$(dirname "$0")" && pwd)"
-java -cp "$ROOT/out" com.example.dungeon.Main
+java -cp "$ROOT/out" com.example.dungeon.Main "$@"
@@ -1,9 +1,239 @@
 package com.example.dungeon;
 
+import com.example.dungeon.core.Autosave;
+import com.example.dungeon.core.CombatSimulator;
 import com.example.dungeon.core.Game;
+import com.example.dungeon.core.GameServer;
+import com.example.dungeon.core.LoadGenerator;
+import com.example.dungeon.core.OutputSinks;
+import com.example.dungeon.core.RegionStore;
+import com.example.dungeon.core.SaveLoad;
+import com.example.dungeon.core.WorldImage;
+import com.example.dungeon.model.CompactWorld;
+import com.example.dungeon.model.WorldGenerator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Locale;
 
 public class Main {
-    public static void main(String[] args) {
-        new Game().run();
+    public static void main(String[] args) throws IOException {
+        // --server [порт]           — многопользовательский режим по TCP
+        // --journal <каталог>       — журнал команд и снимки; при повторном запуске игра восстанавливается из него
+        // --snapshot-every <N>      — снимок состояния каждые N событий журнала (по умолчанию 1000)
+        // --replay <каталог>        — выполнить журнал без вывода и показать скорость
+        // --make-world <файл> <сторона> [размер региона] — записать синтетический мир-сетку для RegionStore
+        // --generate <сторона>      — играть в процедурном мире сторона x сторона по --seed (регионы строятся параллельно)
+        // --world <файл>            — играть в мире из файла, регионы подгружаются по мере движения
+        // --world-budget-mb <N>     — сколько памяти могут занимать загруженные регионы (по умолчанию 64)
+        // --script <файл>           — выполнить команды из файла без вопроса об имени и показать скорость
+        // --output <вид>            — вывод пакетного режима: buffered (по умолчанию), async или none
+        // --simulate <N>            — N боёв Монте-Карло на каждую пару монстр/снаряжение и таблица итогов
+        // --bots <N>                — нагрузка: N ботов в этой JVM, в конце команд/с, p50/p99 по командам и время GC
+        // --bot-seconds <S>, --bot-warmup <S> — длительность замера (по умолчанию 10) и прогрева (по умолчанию 3)
+        // --bot-mix <смесь>         — веса команд ботов, по умолчанию move=40,look=20,take=10,use=5,fight=15,inventory=8
+        // --seed <S>, --spread <P>  — зерно генератора (по умолчанию 42) и разброс урона в процентах (по умолчанию 25)
+        // --tick-ms <N>             — мир живёт сам: тик каждые N мс (монстры бродят и лечатся, предметы появляются снова)
+        // --make-image <файл>       — вместе с --generate или --world: записать образ этого мира для быстрого старта
+        // --image <файл>            — мир из образа (одно чтение файла при запуске), дальше как с --generate
+        // --name <имя>              — имя игрока: консольная игра начинается сразу, без вопроса
+        // --shared-world            — один мир на все сессии, у каждой сессии только слой своих изменений
+        // --common-world            — все сессии играют в одном мире и видят изменения друг друга
+        // --autosave <каталог>      — сессии сохраняются в фоне в <каталог>/<имя>.bin раз в --autosave-ms мс (по умолчанию 5000)
+        // --autosave-fsync <когда>  — always (по умолчанию) или never: fsync перед переименованием файла автосохранения
+        // --scores-flush-ms <N>     — очки дописываются в scores.csv группами раз в N мс (по умолчанию 20)
+        // --scores-fsync            — сбрасывать на диск каждую группу строк очков
+        // --undo [N]                — команды undo [n] и redo: история последних N ходов (по умолчанию 100)
+        // --stats-file <файл>       — раз в --stats-every секунд (по умолчанию 60) писать в файл метрики команд (как stats)
+        Game game = new Game();
+        int server = 0;
+        Path statsFile = null;
+        long statsEvery = 60;
+        boolean sharedWorld = false, commonWorld = false;
+        Path autosave = null;
+        int undo = 0;
+        long scoresFlush = 20;
+        boolean scoresFsync = false;
+        long autosaveMillis = 5000;
+        Autosave.Fsync autosaveFsync = Autosave.Fsync.ALWAYS;
+        Path journal = null;
+        int snapshotEvery = 1000;
+        Path world = null;
+        int generate = 0;
+        CompactWorld imageWorld = null;
+        long imageMillis = 0;
+        Path makeImage = null;
+        long worldBudget = 64L << 20;
+        Path script = null;
+        String output = "buffered";
+        int simulate = 0;
+        long seed = 42;
+        int bots = 0;
+        long botSeconds = 10, botWarmup = 3;
+        String botMix = LoadGenerator.DEFAULT_MIX;
+        int spread = 25;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--server" -> server = i + 1 < args.length && !args[i + 1].startsWith("--")
+                        ? Integer.parseInt(args[++i]) : 4000;
+                case "--stats-file" -> statsFile = Path.of(args[++i]);
+                case "--image" -> {
+                    long start = System.nanoTime();
+                    imageWorld = WorldImage.load(Path.of(args[++i]));
+                    imageMillis = (System.nanoTime() - start) / 1_000_000;
+                }
+                case "--name" -> game.setPlayerName(args[++i]);
+                case "--shared-world" -> sharedWorld = true;
+                case "--common-world" -> commonWorld = true;
+                case "--scores-flush-ms" -> scoresFlush = Long.parseLong(args[++i]);
+                case "--scores-fsync" -> scoresFsync = true;
+                case "--undo" -> undo = i + 1 < args.length && !args[i + 1].startsWith("--") ? Integer.parseInt(args[++i]) : 100;
+                case "--autosave" -> autosave = Path.of(args[++i]);
+                case "--autosave-ms" -> autosaveMillis = Long.parseLong(args[++i]);
+                case "--autosave-fsync" -> autosaveFsync = Autosave.Fsync.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                case "--make-image" -> makeImage = Path.of(args[++i]);
+                case "--stats-every" -> statsEvery = Long.parseLong(args[++i]);
+                case "--journal" -> journal = Path.of(args[++i]);
+                case "--snapshot-every" -> snapshotEvery = Integer.parseInt(args[++i]);
+                case "--world" -> world = Path.of(args[++i]);
+                case "--generate" -> generate = Integer.parseInt(args[++i]);
+                case "--world-budget-mb" -> worldBudget = Long.parseLong(args[++i]) << 20;
+                case "--script" -> script = Path.of(args[++i]);
+                case "--output" -> output = args[++i];
+                case "--simulate" -> simulate = Integer.parseInt(args[++i]);
+                case "--bots" -> bots = Integer.parseInt(args[++i]);
+                case "--bot-seconds" -> botSeconds = Long.parseLong(args[++i]);
+                case "--bot-warmup" -> botWarmup = Long.parseLong(args[++i]);
+                case "--bot-mix" -> botMix = args[++i];
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--spread" -> spread = Integer.parseInt(args[++i]);
+                case "--tick-ms" -> game.enableClock(Long.parseLong(args[++i]));
+                case "--make-world" -> {
+                    Path file = Path.of(args[++i]);
+                    int side = Integer.parseInt(args[++i]);
+                    int region = i + 1 < args.length ? Integer.parseInt(args[++i]) : 64;
+                    RegionStore.writeGrid(file, side, region);
+                    System.out.println("Мир " + side + "x" + side + " записан в " + file.toAbsolutePath());
+                    return;
+                }
+                case "--replay" -> {
+                    game.replay(Path.of(args[++i]));
+                    return;
+                }
+                default -> {
+                    System.out.println("Неизвестный параметр: " + args[i]);
+                    return;
+                }
+            }
+        }
+        if (makeImage != null) {
+            if (generate <= 0 && world == null) {
+                System.out.println("--make-image пишет образ мира --generate или --world");
+                return;
+            }
+            makeImage(makeImage, generate, seed, world, worldBudget);
+            return;
+        }
+        SaveLoad.configureScores(scoresFlush, scoresFsync);
+        if (statsFile != null) game.enableStatsDump(statsFile, statsEvery);
+        if (sharedWorld && commonWorld) {
+            System.out.println("--shared-world и --common-world нельзя использовать вместе");
+            return;
+        }
+        boolean large = generate > 0 || imageWorld != null;// один большой мир в памяти, сгенерированный или из образа
+        // снимок автосохранения берёт у сессии только её слой; общий мир меняют все сессии сразу,
+        // а мир --world и большой без слоя пришлось бы копировать целиком
+        if (autosave != null && (commonWorld || world != null || large && !sharedWorld)) {
+            System.out.println("--autosave нельзя использовать с --common-world, --world, а с --generate и --image — без --shared-world");
+            return;
+        }
+        if (autosave != null) game.enableAutosave(new Autosave(autosave, autosaveMillis, autosaveFsync));
+        if ((generate > 0 ? 1 : 0) + (world != null ? 1 : 0) + (imageWorld != null ? 1 : 0) > 1) {
+            System.out.println("--generate, --world и --image нельзя использовать вместе");
+            return;
+        }
+        if (large && (server > 0 || bots > 0) && !sharedWorld && !commonWorld) {
+            System.out.println("Сгенерированный мир и мир из образа одни на все сессии: для --server и --bots нужен --shared-world или --common-world");
+            return;
+        }
+        if (imageWorld != null) {
+            CompactWorld w = imageWorld;
+            System.out.printf("Мир из образа загружен за %d мс: комнат %,d%n", imageMillis, w.size());
+            game.setStartRoom(() -> w.room(0));
+        }
+        if (generate > 0) {
+            long start = System.nanoTime();
+            WorldGenerator.Generated g = WorldGenerator.generate(WorldGenerator.Config.square(generate), seed);
+            System.out.printf("Мир %dx%d (seed %d) построен за %d мс: регионов %d, запертых ворот %d, монстров %,d, предметов %,d%n",
+                    generate, generate, seed, (System.nanoTime() - start) / 1_000_000, g.regions(), g.lockedDoors(),
+                    g.monsters(), g.items());
+            game.setStartRoom(() -> g.world().room(0));
+        }
+        if (world != null && (sharedWorld || commonWorld || journal != null)) {
+            System.out.println("--world нельзя использовать с --shared-world, --common-world и --journal: мир с диска меняется на месте, в своём файле");
+            return;
+        }
+        if (undo > 0 && (commonWorld || world != null)) {
+            System.out.println("--undo нельзя использовать с --common-world и --world");
+            return;
+        }
+        game.enableUndo(undo);
+        if (sharedWorld) game.shareWorld();
+        if (commonWorld) game.commonWorld();
+        if (server > 0) {
+            new GameServer(game, server).start();
+            return;
+        }
+        if (bots > 0) {
+            try {
+                LoadGenerator.run(game, System.out, bots, botSeconds, botWarmup, botMix, seed);
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        if (simulate > 0) {
+            CombatSimulator.run(System.out, simulate, seed, spread);
+            return;
+        }
+        if (journal != null) game.enableJournal(journal, snapshotEvery);
+        if (world == null) {
+            start(game, script, output);
+            return;
+        }
+        try (RegionStore store = RegionStore.open(world, worldBudget)) {
+            game.setStartRoom(() -> store.room(0));
+            start(game, script, output);
+            System.out.println("Мир: " + store.stats());
+        }
+    }
+
+    // Образ мира --generate или --world (мир --world читается в память целиком)
+    private static void makeImage(Path file, int generate, long seed, Path world, long worldBudget) throws IOException {
+        long bytes;
+        if (generate > 0) {
+            bytes = WorldImage.write(file, WorldGenerator.generate(WorldGenerator.Config.square(generate), seed).world());
+        } else {
+            try (RegionStore store = RegionStore.open(world, worldBudget)) {
+                bytes = WorldImage.write(file, store.toCompact());
+            }
+        }
+        System.out.println("Образ мира записан в " + file.toAbsolutePath() + " (" + bytes + " байт)");
+    }
+
+    private static void start(Game game, Path script, String output) throws IOException {
+        if (script == null) {
+            game.run();
+            return;
+        }
+        PrintStream out = OutputSinks.named(output, System.out);
+        try {
+            game.script(script, out);
+        } finally {
+            out.flush();
+        }
     }
 }
@@ -0,0 +1,148 @@
+package com.example.dungeon.core;
+
+import com.example.dungeon.core.BinarySave.Snapshot;
+import com.example.dungeon.model.GameState;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Автосохранение без остановки игрока. Сессия между командами снимает состояние (BinarySave.capture: отличия
+// своего слоя общего мира или истории undo, игрок, инвентарь, комната и счёт — согласованно, потому что слой
+// меняет только поток этой сессии); время снимка попадает в метрики строкой "(автоснимок)". Кодирует снимок
+// и пишет файл один фоновый поток на весь процесс: временный файл, fsync по политике, атомарное переименование.
+// Пока файл сессии ждёт записи, новые снимки этой сессии заменяют ожидающий (объединяются): на диск попадает
+// только последний. Общий мир (--common-world) меняют все сессии сразу, согласованного снимка одной сессии
+// у него нет, поэтому Main не включает с ним автосохранение; как и с --world и --generate без --shared-world. Таблицу лидеров автосохранение не трогает — очки пишет только команда save.
+// Файл сессии — <каталог>/<имя игрока>.bin в формате save (BinarySave).
+public final class Autosave {
+    public enum Fsync {
+        ALWAYS,// fsync перед переименованием: после сбоя питания файл целый и свежий
+        NEVER// только переименование: файл целый, но последний снимок может пропасть вместе с кэшем ОС
+    }
+
+    private final Path dir;
+    private final long periodNanos;
+    private final Fsync fsync;
+    private final Map<Path, Snapshot> pending = new ConcurrentHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "autosave");
+        t.setDaemon(true);
+        return t;
+    });
+    private final LongAdder written = new LongAdder(), merged = new LongAdder(), failed = new LongAdder();
+    private volatile long lastWriteNanos;
+
+    public Autosave(Path dir, long periodMillis, Fsync fsync) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        this.fsync = fsync;
+    }
+
+    Session session(CommandMetrics.Entry snapshots) {
+        return new Session(snapshots);
+    }
+
+    // Расписание снимков одной сессии: не чаще раза в период и только если с прошлого снимка что-то выполнено
+    final class Session {
+        private final CommandMetrics.Entry snapshots;
+        private long due = System.nanoTime() + periodNanos;
+        private boolean dirty;
+
+        Session(CommandMetrics.Entry snapshots) {
+            this.snapshots = snapshots;
+        }
+
+        // После каждой успешной команды
+        void changed(GameState state) {
+            dirty = true;
+            long now = System.nanoTime();
+            if (now - due < 0) return;
+            save(state, snapshots);
+            dirty = false;
+            due = now + periodNanos;
+        }
+
+        // Конец сессии: последний снимок и ожидание записи на диск
+        void close(GameState state) {
+            if (dirty) save(state, snapshots);
+            flush();
+        }
+    }
+
+    // Снимок состояния сессии; вызывается в потоке сессии между командами. Кодирование и запись — в фоне.
+    // Ошибка автосохранения не прерывает игру: она попадает в System.err и в счётчик ошибок
+    void save(GameState state, CommandMetrics.Entry snapshots) {
+        long allocated = CommandMetrics.allocatedBytes();
+        long start = System.nanoTime();
+        Snapshot snapshot = BinarySave.capture(state);
+        snapshots.record(CommandMetrics.Outcome.OK, System.nanoTime() - start, allocated);
+        Path file = dir.resolve(fileName(state.getPlayer().getName()));
+        // запись этого файла уже в очереди и ещё не началась — она возьмёт новый снимок
+        if (pending.put(file, snapshot) != null) {
+            merged.increment();
+            return;
+        }
+        writer.execute(() -> write(file));
+    }
+
+    // Ждёт, пока на диске окажутся все снимки, отданные до вызова (конец сессии)
+    void flush() {
+        try {
+            writer.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void write(Path file) {
+        Snapshot snapshot = pending.remove(file);
+        if (snapshot == null) return;
+        long start = System.nanoTime();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            ByteBuffer buf = BinarySave.encode(snapshot);
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buf.hasRemaining()) ch.write(buf);
+                if (fsync == Fsync.ALWAYS) ch.force(false);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            written.increment();
+        } catch (IOException e) {
+            failed.increment();
+            System.err.println("Автосохранение в " + file + " не удалось: " + e.getMessage());
+        }
+        lastWriteNanos = System.nanoTime() - start;
+    }
+
+    // Имя игрока годится не для любой файловой системы (и не в любой кодировке имён файлов): остаются только
+    // латинские буквы, цифры, - и _, остальное заменяется на _, а чтобы разные имена не совпали, дописывается хэш имени
+    static String fileName(String player) {
+        StringBuilder sb = new StringBuilder(player.length() + 16);
+        boolean replaced = player.isEmpty();
+        for (int i = 0; i < player.length(); i++) {
+            char c = player.charAt(i);
+            boolean safe = c < 128 && (Character.isLetterOrDigit(c) || c == '-' || c == '_');
+            sb.append(safe ? c : '_');
+            replaced |= !safe;
+        }
+        if (replaced) sb.append(sb.isEmpty() ? "player-" : "-").append(Integer.toHexString(player.hashCode()));
+        return sb.append(".bin").toString();
+    }
+
+    void print(PrintStream out) {
+        out.printf("Автосохранение (%s, fsync %s): записано %d, объединено %d, ошибок %d, последняя запись %.2f мс%n",
+                dir.toAbsolutePath(), fsync.name().toLowerCase(Locale.ROOT),
+                written.sum(), merged.sum(), failed.sum(), lastWriteNanos / 1e6);
+    }
+}
@@ -0,0 +1,431 @@
+package com.example.dungeon.core;
+
+import com.example.dungeon.model.*;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+// Двоичный формат сохранения: весь граф комнат, игрок, инвентарь и счёт.
+// Формат версии 2 (big-endian):
+//   int MAGIC, short VERSION, int tableOffset, int score,
+//   player: str name, int hp, int attack, stacks,
+//   int roomCount, int currentRoom,
+//     (roomCount -1 — мир --world: комнаты хранит файл мира RegionStore, currentRoom — id комнаты в нём)
+//   room[roomCount]: str name, str description, byte locked, stacks, monster,
+//                    byte exits, exit[exits]: byte dir (индекс в DIRS или -1 + str), int roomIndex
+//   stacks: int n, stack[n]: int def, int count — предметы хранятся номерами описаний, а не именами
+//   monster: byte present, str name, int level, int hp, int def loot (-1 — нет)
+//   по смещению tableOffset — таблица описаний: int n, item[n]
+//   item: byte type (-1 — нет предмета), str name, int value
+//   str: int длина в байтах UTF-8 (-1 — null), байты
+// Версия 1 (без таблицы, предметы поштучно: int n, item[n], у монстра item loot) читается как раньше.
+final class BinarySave {
+    static final int MAGIC = 0x44474E53;// "DGNS"
+    static final short VERSION = 2;
+    private static final String[] DIRS = {"north", "south", "east", "west"};
+    private static final byte POTION = 0, WEAPON = 1, KEY = 2, NONE = -1;
+    // Самая короткая запись комнаты: две пустые строки, замок, число стопок, флаг монстра и число выходов
+    private static final int MIN_ROOM_BYTES = 4 + 4 + 1 + 4 + 1 + 1;
+
+    private BinarySave() {
+    }
+
+    // Пишет во временный файл одним вызовом FileChannel.write и атомарно переименовывает его в file.
+    // В мире --world сначала записывает изменённые регионы в файл мира, а в file — только игрока и комнату
+    static long write(GameState s, Path file) throws IOException {
+        RegionStore store = RegionStore.of(s.getCurrent());
+        if (store != null) store.flush();
+        ByteBuffer buf = encode(capture(s));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return buf.limit();
+    }
+
+    // Состояние сессии для записи, снятое между командами (capture) и закодированное потом, хоть в другом потоке
+    // (encode). У мира из слоёв (Layered: общий мир, история undo) база неизменяема, и снимаются только отличия
+    // сессии — время снимка растёт с тем, что сессия изменила, а не с миром; базу encode читает сам.
+    // Другой мир снимается целиком: это встроенный мир или образ в несколько комнат, проходы в нём не меняются.
+    // Мир --world не снимается вовсе: его комнаты лежат в файле мира, снимок помнит только id текущей
+    static final class Snapshot {
+        private final Room current;// комната нижней базы
+        private final List<Room> rooms;// комнаты мира без слоёв в порядке обхода; null — обходит encode
+        private final int pagedRoom;// id текущей комнаты в мире --world; -1 — мир сохраняется в снимке
+        private final Map<Room, RoomSnapshot> states = new HashMap<>();// комната нижней базы -> её состояние
+        private final String player;
+        private final int hp, attack, score;
+        private final ItemContainer inventory = new ItemContainer();
+
+        private Snapshot(GameState s) {
+            Room top = s.getCurrent();
+            List<Layered> layers = new ArrayList<>();
+            Room r = top;
+            while (r instanceof Layered l) {
+                layers.add(l);
+                r = l.base();
+            }
+            current = r;
+            RegionStore store = RegionStore.of(current);
+            pagedRoom = store != null ? store.idOf(current) : -1;
+            if (store != null) {
+                rooms = List.of();
+            } else if (layers.isEmpty()) {
+                rooms = collectRooms(current);
+                for (Room room : rooms) states.put(room, RoomSnapshot.of(room));
+            } else {
+                rooms = null;
+                // снизу вверх: отличия верхнего слоя перекрывают нижний
+                for (int i = layers.size() - 1; i >= 0; i--) {
+                    layers.get(i).forEachChange((room, state) -> states.put(Layered.bottom(room), state));
+                }
+            }
+            Player p = s.getPlayer();
+            player = p.getName();
+            hp = p.getHp();
+            attack = p.getAttack();
+            score = s.getScore();
+            p.getInventory().forEachStack(inventory::add);
+        }
+    }
+
+    // Снимок для encode; вызывается в потоке сессии между командами
+    static Snapshot capture(GameState s) {
+        return new Snapshot(s);
+    }
+
+    static ByteBuffer encode(Snapshot s) throws IOException {
+        List<Room> rooms = s.rooms != null ? s.rooms : collectRooms(s.current);
+        boolean paged = s.pagedRoom >= 0;
+        Map<Room, Integer> index = new HashMap<>(rooms.size() * 2);
+        for (int i = 0; i < rooms.size(); i++) index.put(rooms.get(i), i);
+
+        Out out = new Out(64 + rooms.size() * 96);
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        int tableOffsetAt = out.buf.position();
+        out.putInt(0);// дописывается, когда таблица описаний собрана
+        Map<Item, Integer> defs = new LinkedHashMap<>();
+        out.putInt(s.score);
+        out.putString(s.player);
+        out.putInt(s.hp);
+        out.putInt(s.attack);
+        putStacks(out, s.inventory::forEachStack, defs);
+        out.putInt(paged ? -1 : rooms.size());
+        out.putInt(paged ? s.pagedRoom : index.get(s.current));
+        for (Room r : rooms) {
+            RoomSnapshot state = s.states.get(r);// null — комната как в неизменяемой базе
+            out.putString(r.getName());
+            out.putString(r.getDescription());
+            out.putByte((byte) (state != null ? state.locked() : r.getLocked()));
+            putStacks(out, state != null ? state::forEachItemStack : r::forEachItemStack, defs);
+            Monster m = state != null ? state.monster() : r.getMonster();
+            out.putByte((byte) (m == null ? 0 : 1));
+            if (m != null) {
+                out.putString(m.getName());
+                out.putInt(m.getLevel());
+                out.putInt(m.getHp());
+                out.putInt(defId(defs, m.getLoot()));
+            }
+            out.putByte((byte) r.getNeighbors().size());
+            for (Map.Entry<String, Room> e : r.getNeighbors().entrySet()) {
+                int dir = dirIndex(e.getKey());
+                out.putByte((byte) dir);
+                if (dir < 0) out.putString(e.getKey());
+                out.putInt(index.get(e.getValue()));
+            }
+        }
+
+        out.buf.putInt(tableOffsetAt, out.buf.position());
+        out.putInt(defs.size());
+        for (Item def : defs.keySet()) putItem(out, def);
+        return out.buf.flip();
+    }
+
+    // Читает сохранение целиком в память и заменяет мир, игрока и счёт в s. Не MappedByteBuffer: отображение
+    // держит файл до сборки мусора, и на Windows следующий save не смог бы переименовать .tmp поверх него
+    static void read(GameState s, Path file) throws IOException {
+        read(s, ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    // То же из буфера в памяти; читает с текущей позиции in.
+    // Обрезанный или испорченный файл — IOException, s при этом не меняется
+    static void read(GameState s, ByteBuffer in) throws IOException {
+        try {
+            decode(s, in);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException e) {
+            throw new IOException("Сохранение повреждено или обрезано", e);
+        }
+    }
+
+    private static void decode(GameState s, ByteBuffer in) throws IOException {
+        short version = header(in);
+        Item[] defs = version == 1 ? null : getTable(in.duplicate().position(in.getInt()));
+        int score = in.getInt();
+        String name = getString(in);
+        int hp = in.getInt();
+        int attack = in.getInt();
+        ItemContainer inventory = new ItemContainer();
+        getStacks(in, defs, inventory::add);
+        int roomCount = in.getInt();
+        int current = in.getInt();
+        Room paged = null;
+        if (roomCount == -1) {
+            RegionStore store = RegionStore.of(s.getCurrent());
+            if (store == null) throw new IOException("Сохранение сделано в мире с диска (--world): загрузите его в том же мире");
+            paged = store.room(current);
+            roomCount = 0;
+        } else if (roomCount < 0 || roomCount > in.remaining() / MIN_ROOM_BYTES) {
+            // массивы ниже заводятся по числу из файла: испорченное число — ошибка чтения, а не нехватка памяти
+            throw new IOException("Сохранение повреждено: комнат " + roomCount);
+        } else if (current < 0 || current >= roomCount) {
+            throw new IOException("Сохранение повреждено: текущая комната " + current + " из " + roomCount);
+        }
+
+        Room[] rooms = new Room[roomCount];
+        int[][] exitTargets = new int[roomCount][];
+        String[][] exitDirs = new String[roomCount][];
+        for (int i = 0; i < roomCount; i++) {
+            Room r = new Room(getString(in), getString(in));
+            r.setLocked(in.get());
+            getStacks(in, defs, r::addItem);
+            if (in.get() == 1) {
+                String mName = getString(in);
+                int level = in.getInt();
+                int mHp = in.getInt();
+                r.setMonster(new Monster(mName, level, mHp, defs == null ? getItem(in) : getDef(in.getInt(), defs)));
+            }
+            int exits = in.get() & 0xFF;
+            exitTargets[i] = new int[exits];
+            exitDirs[i] = new String[exits];
+            for (int j = 0; j < exits; j++) {
+                byte dir = in.get();
+                exitDirs[i][j] = dir < 0 ? getString(in) : DIRS[dir];
+                exitTargets[i][j] = in.getInt();
+            }
+            rooms[i] = r;
+        }
+        // соседей связываем вторым проходом: ссылки могут указывать на ещё не прочитанные комнаты
+        for (int i = 0; i < roomCount; i++) {
+            for (int j = 0; j < exitTargets[i].length; j++) {
+                rooms[i].setNeighbor(exitDirs[i][j], rooms[exitTargets[i][j]]);
+            }
+        }
+
+        Player p = s.getPlayer();
+        p.setName(name);
+        p.setHp(hp);
+        p.setAttack(attack);
+        p.getInventory().clear();
+        inventory.forEachStack(p.getInventory()::add);
+        s.setCurrent(paged != null ? paged : rooms[current]);
+        s.setScore(score);
+        s.setTimers(null);// таймеры ссылались на комнаты старого мира
+    }
+
+    // Проверяет MAGIC и версию, оставляя in сразу за ними; возвращает версию
+    static short header(ByteBuffer in) throws IOException {
+        if (in.remaining() < 6 || in.getInt() != MAGIC) throw new IOException("Файл не является сохранением DungeonMini");
+        short version = in.getShort();
+        if (version != 1 && version != VERSION) throw new IOException("Неподдерживаемая версия сохранения: " + version);
+        return version;
+    }
+
+    // Все комнаты, связанные с start проходами в любую сторону (включая запертые), в порядке обхода в ширину:
+    // по выходам и по входам (Room.getEntrances), чтобы не потерять комнату, из которой можно только выйти.
+    // Комнаты сравниваются через equals: у обычных Room это ссылка, у представлений RegionStore — номер комнаты
+    static List<Room> collectRooms(Room start) {
+        return collectRooms(start, Integer.MAX_VALUE);
+    }
+
+    // Не больше limit ближайших к start комнат в порядке обхода в ширину
+    static List<Room> collectRooms(Room start, int limit) {
+        List<Room> order = new ArrayList<>();
+        Set<Room> seen = new HashSet<>();
+        ArrayDeque<Room> queue = new ArrayDeque<>();
+        queue.add(start);
+        seen.add(start);
+        while (!queue.isEmpty() && order.size() < limit) {
+            Room r = queue.poll();
+            order.add(r);
+            for (Room n : r.getNeighbors().values()) {
+                if (seen.add(n)) queue.add(n);
+            }
+            for (Room n : r.getEntrances()) {
+                if (seen.add(n)) queue.add(n);
+            }
+        }
+        return order;
+    }
+
+    private static int dirIndex(String dir) {
+        for (int i = 0; i < DIRS.length; i++) if (DIRS[i].equals(dir)) return i;
+        return -1;
+    }
+
+    // Стопки предметов номерами описаний из defs; новые описания дописываются в defs
+    private static void putStacks(Out out, Consumer<ObjIntConsumer<Item>> stacks, Map<Item, Integer> defs) {
+        int countAt = out.buf.position();
+        out.putInt(0);
+        int[] n = {0};
+        stacks.accept((item, count) -> {
+            out.putInt(defId(defs, item));
+            out.putInt(count);
+            n[0]++;
+        });
+        out.buf.putInt(countAt, n[0]);
+    }
+
+    private static int defId(Map<Item, Integer> defs, Item item) {
+        if (item == null) return -1;
+        return defs.computeIfAbsent(ItemCatalog.intern(item), d -> defs.size());
+    }
+
+    private static Item[] getTable(ByteBuffer in) throws IOException {
+        Item[] defs = new Item[count(in)];
+        for (int i = 0; i < defs.length; i++) defs[i] = getItem(in);
+        return defs;
+    }
+
+    // defs == null — сохранение версии 1, предметы записаны поштучно
+    private static void getStacks(ByteBuffer in, Item[] defs, ObjIntConsumer<Item> into) throws IOException {
+        if (defs == null) {
+            for (Item item : getItems(in)) into.accept(item, 1);
+            return;
+        }
+        for (int i = in.getInt(); i > 0; i--) {
+            Item item = getDef(in.getInt(), defs);
+            into.accept(item, in.getInt());
+        }
+    }
+
+    private static Item getDef(int id, Item[] defs) throws IOException {
+        if (id == -1) return null;
+        if (id < 0 || id >= defs.length) throw new IOException("Неверный номер предмета в сохранении: " + id);
+        return defs[id];
+    }
+
+    static void putItems(Out out, List<Item> items) throws IOException {
+        out.putInt(items.size());
+        for (Item i : items) putItem(out, i);
+    }
+
+    static void putItem(Out out, Item item) throws IOException {
+        if (item == null) {
+            out.putByte(NONE);
+            return;
+        }
+        switch (item) {
+            case Potion potion -> {
+                out.putByte(POTION);
+                out.putString(potion.getName());
+                out.putInt(potion.getHeal());
+            }
+            case Weapon weapon -> {
+                out.putByte(WEAPON);
+                out.putString(weapon.getName());
+                out.putInt(weapon.getBonus());
+            }
+            case Key key -> {
+                out.putByte(KEY);
+                out.putString(key.getName());
+                out.putInt(0);
+            }
+            default -> throw new IOException("Неизвестный тип предмета: " + item.getClass().getSimpleName());
+        }
+    }
+
+    static List<Item> getItems(ByteBuffer in) throws IOException {
+        int n = count(in);
+        List<Item> items = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) items.add(getItem(in));
+        return items;
+    }
+
+    static Item getItem(ByteBuffer in) throws IOException {
+        byte type = in.get();
+        if (type == NONE) return null;
+        String name = getString(in);
+        int value = in.getInt();
+        return switch (type) {
+            case POTION -> ItemCatalog.potion(name, value);
+            case WEAPON -> ItemCatalog.weapon(name, value);
+            case KEY -> ItemCatalog.key(name);
+            default -> throw new IOException("Неизвестный тип предмета в сохранении: " + type);
+        };
+    }
+
+    // Число записей из файла; каждая занимает хотя бы байт, поэтому больше оставшихся байт их быть не может
+    private static int count(ByteBuffer in) throws IOException {
+        int n = in.getInt();
+        if (n < 0 || n > in.remaining()) throw new IOException("Сохранение повреждено: записей " + n);
+        return n;
+    }
+
+    static String getString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0) return null;
+        if (len > in.remaining()) throw new BufferUnderflowException();// не выделять память под испорченную длину
+        byte[] b = new byte[len];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // Растущий буфер записи: размер мира заранее неизвестен (общий с RegionStore)
+    static final class Out {
+        ByteBuffer buf;
+
+        Out(int capacity) {
+            buf = ByteBuffer.allocateDirect(capacity);
+        }
+
+        private void ensure(int n) {
+            if (buf.remaining() >= n) return;
+            ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(buf.capacity() * 2, buf.position() + n));
+            bigger.put(buf.flip());
+            buf = bigger;
+        }
+
+        void putByte(byte b) {
+            ensure(1);
+            buf.put(b);
+        }
+
+        void putShort(short v) {
+            ensure(2);
+            buf.putShort(v);
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            buf.putInt(v);
+        }
+
+        void putLong(long v) {
+            ensure(8);
+            buf.putLong(v);
+        }
+
+        void putString(String s) {
+            if (s == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            ensure(4 + b.length);
+            buf.putInt(b.length);
+            buf.put(b);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.dungeon.core;
+
+import com.example.dungeon.model.*;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Балансировка методом Монте-Карло: для каждой пары (монстр встроенного мира, снаряжение из ItemCatalog)
+// проводит fights боёв по правилам Combat с разбросом урона ±spread% и печатает долю побед, число обменов
+// до победы и сколько HP остаётся.
+// Бои делятся пополам задачами fork-join до THRESHOLD; у каждой половины свой SplittableRandom, отщеплённый
+// от родительского в фиксированном порядке, поэтому при одном seed итог одинаков при любом числе ядер.
+public final class CombatSimulator {
+    static final int THRESHOLD = 1 << 14;
+
+    record Loadout(String name, int attackBonus, int potions, int potionHeal) {
+    }
+
+    record Matchup(String monster, int level, int hp, Loadout loadout) {
+    }
+
+    // Итоги серии боёв; складываются при слиянии половин
+    static final class Tally {
+        long fights, wins, turnsToWin, hpLeft;
+        int minTurns = Integer.MAX_VALUE, maxTurns;
+
+        Tally add(Tally o) {
+            fights += o.fights;
+            wins += o.wins;
+            turnsToWin += o.turnsToWin;
+            hpLeft += o.hpLeft;
+            minTurns = Math.min(minTurns, o.minTurns);
+            maxTurns = Math.max(maxTurns, o.maxTurns);
+            return this;
+        }
+    }
+
+    private final int playerHp;
+    private final int playerAttack;
+    private final int spread;
+
+    CombatSimulator(int playerHp, int playerAttack, int spread) {
+        this.playerHp = playerHp;
+        this.playerAttack = playerAttack;
+        this.spread = spread;
+    }
+
+    // Монстры встроенного мира и стартовые характеристики игрока берутся из Game.newSession
+    public static void run(PrintStream out, int fights, long seed, int spread) {
+        GameState world = Game.newSession("sim", OutputSinks.discard());
+        Player p = world.getPlayer();
+        CombatSimulator sim = new CombatSimulator(p.getHp(), p.getAttack(), spread);
+        List<Matchup> matchups = new ArrayList<>();
+        for (Room r : BinarySave.collectRooms(world.getCurrent())) {
+            Monster m = r.getMonster();
+            if (m == null) continue;
+            for (Loadout l : loadouts()) matchups.add(new Matchup(m.getName(), m.getLevel(), m.getHp(), l));
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long start = System.nanoTime();
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Batch> tasks = new ArrayList<>();
+        for (Matchup m : matchups) tasks.add(sim.new Batch(m, 0, fights, root.split()));
+        for (Batch t : tasks) pool.execute(t);
+        List<Tally> results = new ArrayList<>();
+        for (Batch t : tasks) results.add(t.join());
+        long nanos = System.nanoTime() - start;
+
+        out.printf("Игрок: HP %d, атака %d; разброс урона ±%d%%; боёв на пару: %,d; seed %d%n",
+                p.getHp(), p.getAttack(), spread, fights, seed);
+        out.printf("%-10s %-36s %8s %10s %14s %10s%n", "Монстр", "Снаряжение", "Побед", "Ходов ср.", "Ходов мин-макс", "HP ост.");
+        for (int i = 0; i < matchups.size(); i++) {
+            Matchup m = matchups.get(i);
+            Tally t = results.get(i);
+            out.printf("%-10s %-36s %7.2f%% %10.2f %7d-%-6d %10.2f%n",
+                    m.monster() + " " + m.level(), m.loadout().name(), 100.0 * t.wins / t.fights,
+                    t.wins == 0 ? 0.0 : (double) t.turnsToWin / t.wins, t.wins == 0 ? 0 : t.minTurns, t.maxTurns,
+                    t.wins == 0 ? 0.0 : (double) t.hpLeft / t.wins);
+        }
+        long total = (long) fights * matchups.size();
+        out.printf("Боёв: %,d за %.1f мс (%.0f боёв/с), потоков: %d%n",
+                total, nanos / 1e6, total * 1e9 / Math.max(1, nanos), pool.getParallelism());
+    }
+
+    // Без снаряжения; каждое оружие; каждое зелье по одному и по три; лучшее оружие с тремя лучшими зельями
+    static List<Loadout> loadouts() {
+        List<Loadout> list = new ArrayList<>();
+        list.add(new Loadout("без снаряжения", 0, 0, 0));
+        Weapon bestWeapon = null;
+        Potion bestPotion = null;
+        for (Item item : ItemCatalog.all()) {
+            switch (item) {
+                case Weapon w -> {
+                    list.add(new Loadout(w.getName(), w.getBonus(), 0, 0));
+                    if (bestWeapon == null || w.getBonus() > bestWeapon.getBonus()) bestWeapon = w;
+                }
+                case Potion p -> {
+                    list.add(new Loadout(p.getName() + " x1", 0, 1, p.getHeal()));
+                    list.add(new Loadout(p.getName() + " x3", 0, 3, p.getHeal()));
+                    if (bestPotion == null || p.getHeal() > bestPotion.getHeal()) bestPotion = p;
+                }
+                default -> {
+                }
+            }
+        }
+        if (bestWeapon != null && bestPotion != null) {
+            list.add(new Loadout(bestWeapon.getName() + " + " + bestPotion.getName() + " x3",
+                    bestWeapon.getBonus(), 3, bestPotion.getHeal()));
+        }
+        return list;
+    }
+
+    // Бои [from, to) одной пары. ForkJoinTask формально Serializable, но задачи не сериализуются
+    @SuppressWarnings("serial")
+    private final class Batch extends RecursiveTask<Tally> {
+        private final Matchup matchup;
+        private final int from, to;
+        private final SplittableRandom rnd;
+
+        Batch(Matchup matchup, int from, int to, SplittableRandom rnd) {
+            this.matchup = matchup;
+            this.from = from;
+            this.to = to;
+            this.rnd = rnd;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= THRESHOLD) return simulate();
+            int mid = (from + to) >>> 1;
+            Batch left = new Batch(matchup, from, mid, rnd.split());
+            Batch right = new Batch(matchup, mid, to, rnd.split());
+            left.fork();
+            Tally r = right.compute();
+            return left.join().add(r);
+        }
+
+        private Tally simulate() {
+            Loadout l = matchup.loadout();
+            int attack = playerAttack + l.attackBonus();
+            Tally t = new Tally();
+            for (int i = from; i < to; i++) {
+                long result = Combat.fight(playerHp, attack, matchup.hp(), matchup.level(),
+                        l.potions(), l.potionHeal(), spread, rnd);
+                int hp = Combat.first(result), turns = Combat.second(result);
+                t.fights++;
+                if (hp > 0) {
+                    t.wins++;
+                    t.turnsToWin += turns;
+                    t.hpLeft += hp;
+                    if (turns < t.minTurns) t.minTurns = turns;
+                    if (turns > t.maxTurns) t.maxTurns = turns;
+                }
+            }
+            return t;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.dungeon.core;
+
+import com.example.dungeon.model.ItemContainer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.AbstractList;
+
+// Разобранная строка ввода поверх переиспользуемого буфера символов.
+// Один экземпляр на сессию: parse() не создаёт объектов, строки аргументов появляются только по get().
+public final class CommandLine extends AbstractList<String> {
+    private char[] buf = new char[128];
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int tokens;
+    private final RestName restName = new RestName();
+
+    public CommandLine parse(CharSequence line) {
+        int n = line.length();
+        if (n > buf.length) buf = new char[Math.max(n, buf.length * 2)];
+        tokens = 0;
+        int i = 0;
+        while (i < n) {
+            while (i < n && Character.isWhitespace(line.charAt(i))) i++;
+            if (i == n) break;
+            if (tokens == starts.length) grow();
+            starts[tokens] = i;
+            while (i < n && !Character.isWhitespace(line.charAt(i))) {
+                buf[i] = line.charAt(i);
+                i++;
+            }
+            ends[tokens++] = i;
+        }
+        return this;
+    }
+
+    private void grow() {
+        starts = java.util.Arrays.copyOf(starts, starts.length * 2);
+        ends = java.util.Arrays.copyOf(ends, ends.length * 2);
+    }
+
+    public boolean isBlank() {
+        return tokens == 0;
+    }
+
+    // Имя команды (первый токен) без создания строки — для обхода CommandTrie
+    int nameLength() {
+        return tokens == 0 ? 0 : ends[0] - starts[0];
+    }
+
+    char nameCharAt(int i) {
+        return buf[starts[0] + i];
+    }
+
+    // Строка имени команды нужна только для сообщений об ошибках
+    public String name() {
+        return tokens == 0 ? "" : new String(buf, starts[0], ends[0] - starts[0]);
+    }
+
+    // Аргументы — токены после имени команды
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+        int t = index + 1;
+        return new String(buf, starts[t], ends[t] - starts[t]);
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, tokens - 1);
+    }
+
+    // То же, что String.join(" ", args).equalsIgnoreCase(s), но без склейки строки
+    public boolean restEqualsIgnoreCase(String s) {
+        int p = 0, len = s.length();
+        for (int t = 1; t < tokens; t++) {
+            if (t > 1) {
+                if (p == len || s.charAt(p) != ' ') return false;
+                p++;
+            }
+            for (int i = starts[t]; i < ends[t]; i++, p++) {
+                if (p == len || !sameIgnoreCase(buf[i], s.charAt(p))) return false;
+            }
+        }
+        return p == len;
+    }
+
+    // Аргументы через один пробел как имя предмета для ItemContainer.find и Room.findItem — без создания строки.
+    // Объект один на CommandLine и действителен до следующего parse
+    public ItemContainer.Name restName() {
+        restName.fill();
+        return restName;
+    }
+
+    private final class RestName extends ItemContainer.Name {
+        private char[] chars = new char[64];
+        private int length;
+
+        void fill() {
+            length = 0;
+            for (int t = 1; t < tokens; t++) {
+                int n = ends[t] - starts[t];
+                if (length + n + 1 > chars.length) chars = java.util.Arrays.copyOf(chars, Math.max(chars.length * 2, length + n + 1));
+                if (t > 1) chars[length++] = ' ';
+                System.arraycopy(buf, starts[t], chars, length, n);
+                length += n;
+            }
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+            return chars[index];
+        }
+    }
+
+    // Аргументы через один пробел; создаёт строку, поэтому только для сообщений
+    public String rest() {
+        StringBuilder sb = new StringBuilder();
+        for (int t = 1; t < tokens; t++) {
+            if (t > 1) sb.append(' ');
+            sb.append(buf, starts[t], ends[t] - starts[t]);
+        }
+        return sb.toString();
+    }
+
+    // Пишет строку в нормализованном виде (токены через один пробел) без промежуточных строк
+    void writeTo(Writer w) throws IOException {
+        for (int t = 0; t < tokens; t++) {
+            if (t > 0) w.write(' ');
+            w.write(buf, starts[t], ends[t] - starts[t]);
+        }
+    }
+
+    static boolean sameIgnoreCase(char a, char b) {
+        if (a == b) return true;
+        char ua = Character.toUpperCase(a), ub = Character.toUpperCase(b);
+        return ua == ub || Character.toLowerCase(ua) == Character.toLowerCase(ub);
+    }
+}
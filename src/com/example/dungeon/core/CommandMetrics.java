@@ -0,0 +1,192 @@
+package com.example.dungeon.core;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Метрики по командам: вызовы, ошибки (неверная команда / непредвиденное исключение), гистограмма времени
+// и байты, выделенные потоком команды (ThreadMXBean). Записи заводятся один раз при создании Game и дальше
+// только обновляются счётчиками без блокировок, поэтому одна таблица обслуживает все сессии сервера.
+// Запись одной команды — два System.nanoTime, два чтения счётчика выделений и несколько атомарных инкрементов.
+public final class CommandMetrics {
+    public enum Outcome {OK, INVALID, FAILED}
+
+    // ThreadMXBean тянет за собой JMX (полсотни классов): загружается при первой команде, а не при старте игры
+    private static final class Threads {
+        static final com.sun.management.ThreadMXBean BEAN = threads();
+    }
+
+    // Лог-линейная гистограмма наносекунд: 8 корзин на каждую степень двойки, погрешность перцентиля до 12,5%
+    static final class Histogram {
+        private static final int SUB_BITS = 3, SUB = 1 << SUB_BITS;
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB);
+
+        void record(long nanos) {
+            buckets.getAndIncrement(index(Math.max(0, nanos)));
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+        }
+
+        static int index(long v) {
+            if (v < SUB) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            return (exp - SUB_BITS + 1) * SUB + (int) ((v >>> (exp - SUB_BITS)) & (SUB - 1));
+        }
+
+        // Верхняя граница корзины с номером i
+        static long upper(int i) {
+            if (i < SUB) return i;
+            int exp = i / SUB + SUB_BITS - 1;
+            long base = 1L << exp;
+            return base + ((i % SUB) + 1) * (base >>> SUB_BITS) - 1;
+        }
+
+        // Значение, не меньше которого q-я доля записей (q от 0 до 1); 0, если записей нет
+        long percentile(double q) {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) total += buckets.get(i);
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total)), seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return upper(i);
+            }
+            return upper(buckets.length() - 1);
+        }
+    }
+
+    public static final class Entry {
+        private final String name;
+        private final LongAdder calls = new LongAdder(), invalid = new LongAdder(), failed = new LongAdder();
+        private final LongAdder allocated = new LongAdder(), allocSamples = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final Histogram latency = new Histogram();
+
+        Entry(String name) {
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        // allocatedBefore — allocatedBytes() в начале команды; -1, если поток не считает выделения
+        public void record(Outcome outcome, long nanos, long allocatedBefore) {
+            if (allocatedBefore >= 0) {
+                long after = allocatedBytes();
+                if (after >= allocatedBefore) {
+                    allocated.add(after - allocatedBefore);
+                    allocSamples.increment();
+                }
+            }
+            calls.increment();
+            if (outcome == Outcome.INVALID) invalid.increment();
+            else if (outcome == Outcome.FAILED) failed.increment();
+            latency.record(nanos);
+            max.accumulate(nanos);
+        }
+
+        long calls() {
+            return calls.sum();
+        }
+
+        private void reset() {
+            calls.reset();
+            invalid.reset();
+            failed.reset();
+            allocated.reset();
+            allocSamples.reset();
+            max.reset();
+            latency.reset();
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Entry unknown = new Entry("(неизвестная)");
+    private final Entry autosave = new Entry("(автоснимок)");// снимки Autosave в потоке сессии; не команды
+
+    // Запись команды; заводится при регистрации команд, до того как таблицу начнут читать сессии
+    Entry entry(String name) {
+        return entries.computeIfAbsent(name, Entry::new);
+    }
+
+    Entry unknown() {
+        return unknown;
+    }
+
+    Entry autosave() {
+        return autosave;
+    }
+
+    // Обнуляет все записи (конец прогрева LoadGenerator). Команды, идущие в этот момент, могут попасть в обе половины
+    void reset() {
+        entries.values().forEach(Entry::reset);
+        unknown.reset();
+        autosave.reset();
+    }
+
+    // Сколько команд записано всего
+    long calls() {
+        long n = unknown.calls();
+        for (Entry e : entries.values()) n += e.calls();
+        return n;
+    }
+
+    // Сколько байт выделил текущий поток за всё время; -1, если JVM этого не умеет (или поток виртуальный)
+    public static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = Threads.BEAN;
+        return threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%-12s %8s %8s %8s %10s %10s %10s %10s %12s%n",
+                "Команда", "Вызовов", "Неверн.", "Сбоев", "p50", "p99", "p999", "макс", "Байт/вызов");
+        for (Entry e : entries.values()) print(out, e);
+        print(out, unknown);
+        print(out, autosave);
+    }
+
+    private static void print(PrintStream out, Entry e) {
+        long calls = e.calls.sum();
+        if (calls == 0) return;
+        long samples = e.allocSamples.sum();
+        long max = e.max.get();// граница корзины может оказаться больше самого долгого вызова
+        out.printf("%-12s %8d %8d %8d %10s %10s %10s %10s %12s%n", e.name, calls, e.invalid.sum(), e.failed.sum(),
+                time(Math.min(max, e.latency.percentile(0.5))), time(Math.min(max, e.latency.percentile(0.99))),
+                time(Math.min(max, e.latency.percentile(0.999))), time(max),
+                samples == 0 ? "—" : String.valueOf(e.allocated.sum() / samples));
+    }
+
+    // Таблица в файл: пишется рядом и переименовывается, чтобы читатель не увидел половину
+    public void dump(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(tmp), false, StandardCharsets.UTF_8)) {
+            out.println("Метрики команд на " + java.time.LocalDateTime.now().withNano(0));
+            print(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String time(long nanos) {
+        if (nanos < 1_000_000) return String.format("%.1f мкс", nanos / 1e3);
+        return String.format("%.2f мс", nanos / 1e6);
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean t)) return null;
+        if (!t.isThreadAllocatedMemorySupported()) return null;
+        if (!t.isThreadAllocatedMemoryEnabled()) t.setThreadAllocatedMemoryEnabled(true);
+        return t;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.dungeon.core;
+
+import java.util.Arrays;
+
+// Префиксное дерево над именами команд. Строится один раз после регистрации команд и дальше только читается,
+// поэтому безопасно разделяется между сессиями. Находит команду по точному имени, псевдониму
+// или однозначному префиксу ("inve" -> inventory), не создавая объектов.
+final class CommandTrie {
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] next = new Node[0];
+        Command exact;// команда или псевдоним, имя которых заканчивается здесь
+        Command unique;// единственная команда с этим префиксом
+        boolean ambiguous;// префикс подходит к нескольким командам
+
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++) if (keys[i] == c) return next[i];
+            return null;
+        }
+
+        Node addChild(char c) {
+            Node n = child(c);
+            if (n != null) return n;
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            next = Arrays.copyOf(next, next.length + 1);
+            keys[keys.length - 1] = c;
+            return next[next.length - 1] = new Node();
+        }
+    }
+
+    private final Node root = new Node();
+
+    // Полное имя команды: участвует и в точном поиске, и в сокращениях по префиксу
+    void put(String name, Command c) {
+        Node n = root;
+        for (int i = 0; i < name.length(); i++) {
+            n = n.addChild(Character.toLowerCase(name.charAt(i)));
+            if (n.ambiguous) continue;
+            if (n.unique == null) n.unique = c;
+            else if (n.unique != c) {
+                n.unique = null;
+                n.ambiguous = true;
+            }
+        }
+        n.exact = c;
+    }
+
+    // Псевдоним срабатывает только при точном совпадении и не мешает сокращениям
+    void alias(String name, Command c) {
+        Node n = root;
+        for (int i = 0; i < name.length(); i++) n = n.addChild(Character.toLowerCase(name.charAt(i)));
+        n.exact = c;
+    }
+
+    // null — команда неизвестна или префикс неоднозначен
+    Command find(CommandLine line) {
+        Node n = root;
+        int len = line.nameLength();
+        if (len == 0) return null;
+        for (int i = 0; i < len && n != null; i++) n = n.child(Character.toLowerCase(line.nameCharAt(i)));
+        if (n == null) return null;
+        if (n.exact != null) return n.exact;
+        return n.ambiguous ? null : n.unique;
+    }
+}
@@ -1,16 +1,48 @@
 package com.example.dungeon.core;
 
 import com.example.dungeon.model.*;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class Game {
-    private final GameState state = new GameState();
+    // Таблица команд одна на все сессии: лямбды не хранят состояния, всё состояние сессии лежит в GameState
     private final Map<String, Command> commands = new LinkedHashMap<>();
+    private final CommandTrie trie = new CommandTrie();
+    // Команды, которые не меняют мир (только вывод или внешние файлы): при воспроизведении журнала
+    // не выполняются, от них остаётся только +1 к счёту
+    private final Set<Command> externalOnly = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Метрики по командам; псевдонимы считаются вместе со своей командой (n — это move)
+    private final CommandMetrics metrics = new CommandMetrics();
+    private final Map<Command, CommandMetrics.Entry> metered = new IdentityHashMap<>();
+    private Supplier<Room> startRoom;// откуда начинают новые сессии; null — встроенный мир newSession
+    private String playerName;// имя игрока консольной сессии; null — спросить
+    private Path journalDir;
+    private int snapshotEvery = 1000;
+    private WorldClock clock;// null — мир живёт только по команде tick
+    private boolean common;// все сессии играют в одном мире (CommonWorld)
+    private Autosave autosave;// null — сохраняет только команда save
+    private final Set<Command> unscored = Collections.newSetFromMap(new IdentityHashMap<>());// tick, undo, redo
+    private final Set<Command> travel = Collections.newSetFromMap(new IdentityHashMap<>());// undo, redo: версий не заводят
+    private int undoDepth;// 0 — без истории undo/redo
+    private Recording recording;// запись JFR, запущенная командой record; одна на процесс
+    private static final Path RECORDINGS = Path.of("recordings");// record пишет только сюда: команду может дать игрок сервера
+    private static final List<String> NORTH = List.of("north"), SOUTH = List.of("south"),
+            EAST = List.of("east"), WEST = List.of("west");
 
     static {
         WorldInfo.touch("Game");
@@ -18,100 +50,223 @@ public class Game {
 
     public Game() {
         registerCommands();
-        bootstrapWorld();
+        commands.forEach(trie::put);
+        commands.forEach((name, c) -> metered.put(c, metrics.entry(name)));
+        registerAliases();
+        for (String name : List.of("tick", "undo", "redo")) unscored.add(commands.get(name));
+        travel.add(commands.get("undo"));
+        travel.add(commands.get("redo"));
+        for (String name : List.of("help", "gc-stats", "save", "scores", "exit", "alloc", "stats", "record")) {
+            externalOnly.add(commands.get(name));
+        }
+    }
+
+    // Новые сессии начинают в комнате start вместо встроенного мира (например, мир из RegionStore)
+    public void setStartRoom(Supplier<Room> start) {
+        this.startRoom = start;
+    }
+
+    // Новые сессии получают свой слой поверх одного общего мира (SharedWorld), а не свою копию мира.
+    // Общий мир — заданный setStartRoom или встроенный
+    public void shareWorld() {
+        SharedWorld world = new SharedWorld(templateStart());
+        startRoom = world::newSession;
+    }
+
+    // Все новые сессии играют в одном мире (CommonWorld): предметы, монстры и двери общие.
+    // Тики WorldLife принадлежат сессии, поэтому в общем мире их нет: часы выключаются, tick — ошибка
+    public void commonWorld() {
+        CommonWorld world = new CommonWorld(templateStart());
+        startRoom = world::start;
+        clock = null;
+        common = true;
+    }
+
+    private Room templateStart() {
+        if (startRoom != null) return startRoom.get();
+        return newSession("", OutputSinks.discard()).getCurrent();
+    }
+
+    // Сессии ведут историю последних depth версий мира для undo/redo (WorldHistory)
+    public void enableUndo(int depth) {
+        this.undoDepth = depth;
+    }
+
+    // Консольная сессия и пакетный режим начинают сразу, без вопроса об имени
+    public void setPlayerName(String name) {
+        this.playerName = name;
+    }
+
+    // Включает журнал команд консольной сессии в каталоге dir со снимком каждые snapshotEvery событий
+    public void enableJournal(Path dir, int snapshotEvery) {
+        this.journalDir = dir;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    // Включает часы мира: тик каждые tickMillis мс, сессии применяют накопившиеся тики перед каждой командой
+    public void enableClock(long tickMillis) {
+        this.clock = new WorldClock(tickMillis);
+    }
+
+    // Сессии периодически сохраняются в фоне (см. Autosave)
+    public void enableAutosave(Autosave autosave) {
+        this.autosave = autosave;
+    }
+
+    // Раз в periodSeconds секунд пишет таблицу метрик команд в file (фоновый поток-демон)
+    public void enableStatsDump(Path file, long periodSeconds) {
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stats-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                metrics.dump(file);
+            } catch (IOException e) {
+                System.err.println("Не удалось записать метрики в " + file + ": " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
     }
 
     private void registerCommands() {
-        commands.put("help", (ctx, a) -> System.out.println("Команды: " + String.join(", ", commands.keySet())));
+        commands.put("help", (ctx, a) -> {
+            ctx.getOut().println("Команды: " + String.join(", ", commands.keySet()));
+            ctx.getOut().println("Сокращения: n, s, e, w, l, inv и любой однозначный префикс команды");
+        });
         commands.put("gc-stats", (ctx, a) -> {
             Runtime rt = Runtime.getRuntime();
             long free = rt.freeMemory(), total = rt.totalMemory(), used = total - free;
-            System.out.println("Память: used=" + used + " free=" + free + " total=" + total);
+            ctx.getOut().println("Память: used=" + used + " free=" + free + " total=" + total);
+        });
+        commands.put("stats", (ctx, a) -> {
+            metrics.print(ctx.getOut());
+            if (autosave != null) autosave.print(ctx.getOut());
         });
-        commands.put("look", (ctx, a) -> System.out.println(ctx.getCurrent().describe()));
+        commands.put("record", (ctx, args) -> {
+            String action = args.isEmpty() ? "" : args.getFirst().toLowerCase(Locale.ROOT);
+            switch (action) {
+                case "start" -> startRecording(ctx.getOut(), args.size() > 1 ? recordingFile(args.get(1)) : null);
+                case "stop" -> stopRecording(ctx.getOut());
+                default -> throw new InvalidCommandException("Использование: record start [файл.jfr] | record stop");
+            }
+        });
+        commands.put("look", (ctx, a) -> ctx.getOut().println(ctx.getCurrent().describe()));
         commands.put("move", (ctx, args) -> {
-//            System.out.println("Куда идем? Выбери направление move north, move south, move east, move west");
+//            ctx.getOut().println("Куда идем? Выбери направление move north, move south, move east, move west");
             //Проверяем на корректность аргументы:
             if (args.isEmpty()) {
                 throw new InvalidCommandException("Неверно задано направление. Выбери, куда идем: move north, move south, move east, move west");
             }
-            String direction = String.join(" ", args).toLowerCase();
             //Получаем следующую комнату из карты
             Room currentRoom = ctx.getCurrent();
-            Room nextRoom = currentRoom.getNeighbors().get(direction);
+            Room nextRoom = null;
+            for (Map.Entry<String, Room> e : currentRoom.getNeighbors().entrySet()) {
+                if (argsEqual(args, e.getKey())) {
+                    nextRoom = e.getValue();
+                    break;
+                }
+            }
             //Если она есть, перемещаемся
             if (nextRoom != null) {
 //                Проверяем, закрыта ли дверь
                 if (nextRoom.isLocked()) {
-                    System.out.println("Дверь заперта. Нужен ключ");
+                    ctx.getOut().println("Дверь заперта. Нужен ключ");
                     return;
                 }
                 ctx.setCurrent(nextRoom);
-                System.out.println("Вы перешли в: "+nextRoom.getName());
+                if (GameEvents.active()) {
+                    GameEvents.roomTransition(ctx.getPlayer().getName(), currentRoom.getName(), nextRoom.getName(), argsText(args));
+                }
+                ctx.getOut().println("Вы перешли в: "+nextRoom.getName());
                 //Описание локации
-                System.out.println(nextRoom.describe());
+                ctx.getOut().println(nextRoom.describe());
             }
             else {
-                throw new InvalidCommandException("Нет пути: "+direction);
+                throw new InvalidCommandException("Нет пути: "+argsText(args));
             }
         });
+        commands.put("goto", (ctx, args) -> {
+            if (args.isEmpty()) {
+                throw new InvalidCommandException("Не указана комната: goto <название комнаты>");
+            }
+            String target = argsText(args);
+            Navigator nav = ctx.getNavigator();
+            if (!nav.knows(target)) {
+                throw new InvalidCommandException((nav.complete() ? "Нет комнаты \"" : "Поблизости нет комнаты \"") + target + "\"");
+            }
+            List<String> route = nav.route(ctx.getCurrent(), target);
+            if (route == null) throw new InvalidCommandException("До комнаты \"" + target + "\" не дойти: путь закрыт");
+            if (route.isEmpty()) {
+                ctx.getOut().println("Вы уже здесь: " + ctx.getCurrent().getName());
+                return;
+            }
+            ctx.getOut().println("Маршрут (" + route.size() + " шаг.): " + String.join(" -> ", route));
+            // идём обычными move, но без описания каждой промежуточной комнаты
+            Command move = commands.get("move");
+            PrintStream out = ctx.getOut();
+            ctx.setOut(OutputSinks.discard());
+            try {
+                for (String dir : route) move.execute(ctx, List.of(dir));
+            } finally {
+                ctx.setOut(out);
+            }
+            out.println("Вы пришли в: " + ctx.getCurrent().getName());
+            out.println(ctx.getCurrent().describe());
+        });
         commands.put("take", (ctx, args) -> {
             if (args.isEmpty()) {
                 throw new InvalidCommandException("Не указан предмет");
             }
-            String itemName = String.join(" ", args);
             Room currentRoom = ctx.getCurrent();
             //Ищем предмет в комнате по наименованию
-            Optional<Item> foundItem = currentRoom.getItems().stream()
-                    .filter(item -> item.getName().equalsIgnoreCase(itemName))
-                    .findFirst();
-            if (foundItem.isPresent()) {
-                Item item = foundItem.get();
-                //Удаляем предмет из комнаты
-                currentRoom.getItems().remove(item);
+            Item item = currentRoom.findItem(argsName(args));
+            if (item != null) {
+                //Удаляем предмет из комнаты; в общем мире его мог только что забрать другой игрок
+                if (!currentRoom.removeItem(item)) {
+                    throw new InvalidCommandException("Предмет \"" + item.getName() + "\" уже забрали");
+                }
                 //Добавляем предмет в инвентарь игрока
                 ctx.getPlayer().getInventory().add(item);
-                System.out.println("Взято: "+item.getName());
+                ctx.getOut().println("Взято: "+item.getName());
             } else {
-                throw new InvalidCommandException("Предмет \"+itemName+\" не найден");}
+                throw new InvalidCommandException("Предмет \"" + argsText(args) + "\" не найден");}
         });
         commands.put("inventory", (ctx, args) -> {
-            List<Item> inventory = ctx.getPlayer().getInventory();
+            ItemContainer inventory = ctx.getPlayer().getInventory();
             //Печатаем состояние инвентаря
             if (inventory.isEmpty()) {
-                System.out.println("Инвентарь пуст");
+                ctx.getOut().println("Инвентарь пуст");
                 return;
             }
-            //Группируем предметы по классам
-            Map<String, List<Item>> groupedItems = inventory.stream()
-                    .collect(Collectors.groupingBy(item -> item.getClass().getSimpleName()));
-            //Проходим по каждой группе и выводим информацию
-            groupedItems.forEach((type, items) -> {
-                //Сортируем предметы по имени в группе
-                List<String> itemNames = items.stream()
-                        .map(Item::getName)
-                        .sorted()
-                        .toList();
-                System.out.println("- "+type+" ("+items.size()+"): "+String.join(", ", itemNames));
-            });
+            //Группы по типам и имена внутри них уже отсортированы контейнером
+            StringBuilder sb = new StringBuilder();
+            for (String type : inventory.types()) {
+                sb.setLength(0);
+                sb.append("- ").append(type).append(" (").append(inventory.count(type)).append("): ");
+                boolean first = true;
+                for (Map.Entry<String, Integer> e : inventory.names(type).entrySet()) {
+                    for (int i = e.getValue(); i > 0; i--) {
+                        if (!first) sb.append(", ");
+                        sb.append(e.getKey());
+                        first = false;
+                    }
+                }
+                ctx.getOut().println(sb);
+            }
         });
 
         commands.put("use", (ctx, args) -> {
             if (args.isEmpty()) {
                 throw new InvalidCommandException("Не указан предмет");
             }
-            //Объединяем аргументы в одну строку
-            String itemName = String.join(" ", args);
             Player player = ctx.getPlayer();
             //Ищем в инвентаре
-            Optional<Item> foundItem = player.getInventory().stream()
-                    .filter(item -> item.getName().equalsIgnoreCase(itemName))
-                    .findFirst();
-            if (foundItem.isPresent()) {
-                Item item = foundItem.get();
+            Item item = player.getInventory().find(argsName(args));
+            if (item != null) {
                 item.apply(ctx);
             } else {
-                throw new InvalidCommandException("В вашем инвентаре нет " + itemName);
+                throw new InvalidCommandException("В вашем инвентаре нет " + argsText(args));
             }
         });
         commands.put("fight", (ctx, args) -> {
@@ -122,55 +277,91 @@ public class Game {
             if (monster == null) {
                 throw new InvalidCommandException("Здесь не с кем сражаться");
             }
-            //Описание боя
-            //Удары от игрока
-            monster.setHp(monster.getHp() - player.getAttack());
-            System.out.println("Вы бьёте "+monster.getName()+" на "+player.getAttack()+". HP монстра: "+monster.getHp());
+            //Описание боя: один обмен ударами по правилам Combat
+            int playerDamage = Combat.playerDamage(player.getAttack());
+            int monsterDamage = Combat.monsterDamage(monster.getLevel());
+            //Удары от игрока: комната снимает HP и убирает убитого монстра одним вызовом (в общем мире бьют и другие)
+            int monsterHp = currentRoom.strikeMonster(monster, playerDamage);
+            if (monsterHp <= 0) {
+                throw new InvalidCommandException(monster.getName() + " уже повержен");
+            }
+            long after = Combat.exchange(player.getHp(), playerDamage, monsterHp, monsterDamage);
+            ctx.getOut().println("Вы бьёте "+monster.getName()+" на "+playerDamage+". HP монстра: "+Combat.second(after));
             //Проверяем, здоровье монстра
-            if (monster.getHp() <= 0) {
-                System.out.println("Вы победили "+monster.getName()+" (ур. "+monster.getLevel()+")");
-                currentRoom.setMonster(null);
+            if (Combat.second(after) <= 0) {
+                ctx.getOut().println("Вы победили "+monster.getName()+" (ур. "+monster.getLevel()+")");
                 Item loot = monster.getLoot();
                 if (loot != null) {
-                    currentRoom.getItems().add(loot);
-                    System.out.println(monster.getName()+" (ур. "+monster.getLevel()+")"+" оставил после себя "+loot.getName());
+                    ctx.getOut().println(monster.getName()+" (ур. "+monster.getLevel()+")"+" оставил после себя "+loot.getName());
                 }
                 int scoreForWin = monster.getLevel(); //Начисляем кол-во очков от уровня монстра
                 ctx.addScore(scoreForWin); //Записываем счет
             } else {
                 //Удары от монстра
-                //Принимаем, что урон монстра будет соответствовать уровню монстра
-                int monsterDamage = monster.getLevel();
-                player.setHp(player.getHp()-monsterDamage);
-                System.out.println("Монстр отвечает на "+monsterDamage+". Ваше HP: "+player.getHp());
+                //Принимаем, что урон монстра будет соответствовать уровню монстра (Combat.monsterDamage)
+                player.setHp(Combat.first(after));
+                ctx.getOut().println("Монстр отвечает на "+monsterDamage+". Ваше HP: "+player.getHp());
 
                 if (player.getHp() <= 0) {
-                    System.out.println("Вы потерпели поражение");
-                    System.exit(0);
+                    ctx.getOut().println("Вы потерпели поражение");
+                    ctx.finish();// завершается только эта сессия
                 }
             }
         });
+        commands.put("tick", (ctx, args) -> {
+            if (common) throw new InvalidCommandException("В общем мире нет тиков: он меняется только действиями игроков");
+            long n = 1;
+            if (!args.isEmpty()) {
+                try {
+                    n = Long.parseLong(argsText(args));
+                } catch (NumberFormatException e) {
+                    throw new InvalidCommandException("Число тиков должно быть целым: tick [n]");
+                }
+                if (n <= 0) throw new InvalidCommandException("Число тиков должно быть больше нуля");
+                if (n > TimingWheel.MAX_DELAY) {
+                    throw new InvalidCommandException("Слишком много тиков за раз, максимум " + TimingWheel.MAX_DELAY);
+                }
+            }
+            WorldLife.advance(ctx, n);
+        });
+        commands.put("undo", (ctx, args) -> {
+            WorldHistory h = history(ctx);
+            int n = h.undo(ctx, steps(args, "undo [n]"));
+            if (n == 0) throw new InvalidCommandException("Нечего отменять");
+            ctx.getOut().println("Отменено ходов: " + n + " (можно вернуть: " + h.redoable() + ")");
+            ctx.getOut().println(ctx.getCurrent().describe());
+        });
+        commands.put("redo", (ctx, args) -> {
+            WorldHistory h = history(ctx);
+            int n = h.redo(ctx, steps(args, "redo [n]"));
+            if (n == 0) throw new InvalidCommandException("Нечего возвращать");
+            ctx.getOut().println("Возвращено ходов: " + n + " (можно отменить: " + h.undoable() + ")");
+            ctx.getOut().println(ctx.getCurrent().describe());
+        });
         commands.put("save", (ctx, a) -> SaveLoad.save(ctx));
         commands.put("load", (ctx, a) -> SaveLoad.load(ctx));
-        commands.put("scores", (ctx, a) -> SaveLoad.printScores());
+        commands.put("scores", (ctx, a) -> {
+            if (a.isEmpty()) SaveLoad.printScores(ctx.getOut());
+            else SaveLoad.printPlayerScore(ctx.getOut(), argsText(a));
+        });
         commands.put("exit", (ctx, a) -> {
-            System.out.println("До скорых встреч!");
-            System.exit(0);
+            ctx.getOut().println("До скорых встреч!");
+            ctx.finish();
         });
         commands.put("alloc", (ctx, args) -> {
-            System.out.println("Демонстрация работы GC...");
+            ctx.getOut().println("Демонстрация работы GC...");
             //До аллокации
             Runtime rt = Runtime.getRuntime();
             long memoryBefore = rt.totalMemory() - rt.freeMemory();
-            System.out.println("Память до: " + memoryBefore + " байт");
+            ctx.getOut().println("Память до: " + memoryBefore + " байт");
             //Создаем много объектов для демонстрации работы GC
             List<String> tempList = new ArrayList<>();
             for (int i = 0; i < 100000; i++) {
                 tempList.add("Временный объект " + i + " " + new Date());
             }
             long memoryDuring = rt.totalMemory() - rt.freeMemory();
-            System.out.println("Память во время: " + memoryDuring + " байт");
-            System.out.println("Выделено: " + (memoryDuring - memoryBefore) + " байт");
+            ctx.getOut().println("Память во время: " + memoryDuring + " байт");
+            ctx.getOut().println("Выделено: " + (memoryDuring - memoryBefore) + " байт");
             //Освобождаем ссылки - объекты становятся кандидатами на GC
             tempList = null;
             //Выполняем сборку мусора
@@ -178,67 +369,364 @@ public class Game {
             //ставим отсрочку для GC
             try { Thread.sleep(1000); } catch (InterruptedException e) {}
             long memoryAfter = rt.totalMemory() - rt.freeMemory();
-            System.out.println("Память после: " + memoryAfter + " байт");
-            System.out.println("Освобождено GC: " + (memoryDuring - memoryAfter) + " байт");
-        });
-    }
-
-    private void bootstrapWorld() {
-//        System.out.println("Добро пожаловать в игру DungeonMini (TEMPLATE).  Если Вы хотите загрузить предыдущую игру, введите load. Для вызова команд введите 'help'.");
-        Scanner scanner = new Scanner(System.in);// надо добавить условие на загрузку: загрузить? или новый игрок?
-        System.out.print("Введите ваше имя: ");
-        String player = scanner.nextLine();
-        Player hero = new Player(player, 20, 5);
-        state.setPlayer(hero);
-
-        Room square = new Room("Площадь", "Каменная площадь с фонтаном.");
-        Room forest = new Room("Лес", "Шелест листвы и птичий щебет.");
-        Room cave = new Room("Пещера", "Темно и сыро.");
-        Room castle = new Room("Замок", "Мощные ворота возвышаются и уходят к небу.");
-        Room lawn = new Room("Поляна", "В центре огромный камень.");
-        square.getNeighbors().put("north", forest);
-        forest.getNeighbors().put("south", square);
-        forest.getNeighbors().put("east", cave);
-        forest.getNeighbors().put("west", lawn);
-        cave.getNeighbors().put("west", forest);
-        castle.getNeighbors().put("east", square);// новая локация
-        lawn.getNeighbors().put("east", forest);// новая локация
-        square.getNeighbors().put("west", castle);// новая локация
-
-        forest.getItems().add(new Potion("Малое зелье", 5));
-        forest.setMonster(new Monster("Волк", 1, 8, new Potion("Среднее зелье", 10)));
-        cave.setMonster(new Monster("Змея", 2, 16, new Weapon("Стальной клинок", 11)));// новый монстр
-        lawn.getItems().add(new Key("Ключ от замка"));// кладем ключ на поляну
-        castle.setLocked(1);// запираем замок на ключ
-
-        state.setCurrent(square);
+            ctx.getOut().println("Память после: " + memoryAfter + " байт");
+            ctx.getOut().println("Освобождено GC: " + (memoryDuring - memoryAfter) + " байт");
+        });
+    }
+
+    // Запись JFR с настройками profile и событиями игры (GameEvents); файл пишется при record stop
+    // Только имя файла в каталоге recordings, без каталогов; .jfr дописывается, если его нет
+    private static Path recordingFile(String name) {
+        if (name.isEmpty() || name.equals(".") || name.equals("..") || name.indexOf('/') >= 0 || name.indexOf('\\') >= 0
+                || name.indexOf(':') >= 0 || name.indexOf('\0') >= 0) {
+            throw new InvalidCommandException("Запись сохраняется только в каталог " + RECORDINGS + ", укажите имя файла без каталогов");
+        }
+        return RECORDINGS.resolve(name.endsWith(".jfr") ? name : name + ".jfr");
+    }
+
+    private synchronized void startRecording(PrintStream out, Path file) {
+        if (recording != null) throw new InvalidCommandException("Запись уже идёт: " + recording.getDestination());
+        if (file == null) {
+            file = RECORDINGS.resolve("dungeon-" + LocalDateTime.now().withNano(0).toString().replace(':', '-') + ".jfr");
+        }
+        try {
+            Files.createDirectories(RECORDINGS);
+            Recording r = new Recording(Configuration.getConfiguration("profile"));
+            r.setName("DungeonMini");
+            r.setDestination(file);
+            GameEvents.activate();
+            r.start();
+            recording = r;
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Не удалось начать запись JFR: " + e.getMessage(), e);
+        }
+        out.println("Запись JFR начата, файл: " + file.toAbsolutePath());
+    }
+
+    private synchronized void stopRecording(PrintStream out) {
+        if (recording == null) throw new InvalidCommandException("Запись не идёт: record start");
+        Path file = recording.getDestination();
+        try {
+            recording.stop();// пишет файл
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        out.println("Запись JFR сохранена: " + file.toAbsolutePath());
+    }
+
+    private WorldHistory history(GameState state) {
+        WorldHistory h = state.getHistory();
+        if (h == null || !h.owns(state.getCurrent())) {
+            throw new InvalidCommandException("История ходов не ведётся: запустите игру с --undo");
+        }
+        return h;
+    }
+
+    private static int steps(List<String> args, String usage) {
+        if (args.isEmpty()) return 1;
+        try {
+            int n = Integer.parseInt(argsText(args));
+            if (n > 0) return n;
+        } catch (NumberFormatException e) {
+            // ниже
+        }
+        throw new InvalidCommandException("Число ходов должно быть целым и больше нуля: " + usage);
+    }
+
+    // После успешной команды, меняющей мир: новая версия истории. Мир, заменённый целиком (load),
+    // начинает новую историю — отменить можно только ходы после загрузки
+    private void commitVersion(GameState state) {
+        if (undoDepth == 0) return;
+        WorldHistory h = state.getHistory();
+        if (h != null && h.owns(state.getCurrent())) h.commit(state);
+        else WorldHistory.attach(state, undoDepth);
+    }
+
+    // Короткие имена: n/s/e/w — шаг в сторону, l — look, inv — inventory
+    private void registerAliases() {
+        Command move = commands.get("move");
+        alias("n", (ctx, a) -> move.execute(ctx, NORTH), "move");
+        alias("s", (ctx, a) -> move.execute(ctx, SOUTH), "move");
+        alias("e", (ctx, a) -> move.execute(ctx, EAST), "move");
+        alias("w", (ctx, a) -> move.execute(ctx, WEST), "move");
+        alias("l", commands.get("look"), "look");
+        alias("inv", commands.get("inventory"), "inventory");
+    }
+
+    private void alias(String name, Command c, String command) {
+        trie.alias(name, c);
+        metered.putIfAbsent(c, metrics.entry(command));
+    }
+
+    // Аргументы, склеенные через пробел, равны s без учёта регистра; для CommandLine — без склейки строки
+    private static boolean argsEqual(List<String> args, String s) {
+        if (args instanceof CommandLine line) return line.restEqualsIgnoreCase(s);
+        if (args.size() == 1) return args.getFirst().equalsIgnoreCase(s);
+        return String.join(" ", args).equalsIgnoreCase(s);
     }
 
+    // Имя предмета из аргументов; для CommandLine — представление над его буфером, без склейки строки
+    private static CharSequence argsName(List<String> args) {
+        return args instanceof CommandLine line ? line.restName() : argsText(args);
+    }
+
+    private static String argsText(List<String> args) {
+        return args instanceof CommandLine line ? line.rest() : String.join(" ", args);
+    }
+
+    // Строит новый мир для одной сессии: у каждого игрока свои комнаты, монстры и предметы
+    public static GameState newSession(String playerName, PrintStream out) {
+        GameState state = new GameState();
+        state.setOut(out);
+        state.setPlayer(new Player(playerName, StarterWorld.PLAYER_HP, StarterWorld.PLAYER_ATTACK));
+        state.setCurrent(StarterWorld.build());
+        return state;
+    }
+
+    // Консольный режим: одна сессия на System.in / System.out.
+    // С журналом: если в каталоге уже есть журнал — восстанавливаемся из него без вопроса об имени.
+    // Журнал сессии, которая уже закончилась (игрок погиб), уходит в архив, и начинается новая сессия
     public void run() {
-        System.out.println("Добро пожаловать в игру DungeonMini (TEMPLATE).  Если Вы хотите загрузить предыдущую игру, введите load. Для вызова команд введите 'help'.");
         try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in))) {
-            while (true) {
-                System.out.print("> ");
-                String line = in.readLine();
-                if (line == null) break;
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                List<String> parts = Arrays.asList(line.split("\s+"));
-                String cmd = parts.getFirst().toLowerCase(Locale.ROOT);
-                List<String> args = parts.subList(1, parts.size());
-                Command c = commands.get(cmd);
-                try {
-                    if (c == null) throw new InvalidCommandException("Неизвестная команда: " + cmd);
-                    c.execute(state, args);
-                    state.addScore(1);
-                } catch (InvalidCommandException e) {
-                    System.out.println("Ошибка: " + e.getMessage());
-                } catch (Exception e) {
-                    System.out.println("Непредвиденная ошибка: " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            GameState state = null;
+            Journal journal = null;
+            if (journalDir != null && Journal.exists(journalDir)) {
+                state = emptyState(System.out);
+                journal = recover(state, journalDir);
+                if (state.isFinished()) {
+                    journal.close();
+                    journal = null;
+                    state = null;
+                    System.out.println("Сессия в журнале уже завершена, журнал перенесён в "
+                            + Journal.archive(journalDir).toAbsolutePath());
+                } else {
+                    System.out.println("Восстановлено из журнала " + journalDir.toAbsolutePath() + ": событий " + journal.seq());
                 }
             }
+            if (state == null) {
+                state = playerName != null ? newState(playerName, System.out) : openSession(in, System.out);
+                if (state == null) return;
+                if (journalDir != null) journal = Journal.create(journalDir, state, snapshotEvery);
+            }
+            try {
+                play(state, in, journal);
+            } finally {
+                if (journal != null) journal.close();
+            }
         } catch (IOException e) {
             System.out.println("Ошибка ввода/вывода: " + e.getMessage());
         }
     }
+
+    // Режим replay: заново выполняет весь журнал от начального снимка без вывода и печатает скорость
+    public void replay(Path dir) throws IOException {
+        GameState state = emptyState(OutputSinks.discard());
+        BinarySave.read(state, dir.resolve(Journal.snapshotName(0)));
+        if (undoDepth > 0) WorldHistory.attach(state, undoDepth);
+        List<Journal.Event> events = Journal.readEvents(dir);
+        long start = System.nanoTime();
+        long n = replay(state, dir, events, 0);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("Воспроизведено событий: %d за %.1f мс (%.0f событий/с)%n",
+                n, nanos / 1e6, n * 1e9 / Math.max(1, nanos));
+        Player p = state.getPlayer();
+        System.out.println("Итог: " + p.getName() + ", HP " + p.getHp() + ", атака " + p.getAttack()
+                + ", очки " + state.getScore() + ", комната " + state.getCurrent().getName()
+                + (state.isFinished() ? " (сессия завершена)" : ""));
+    }
+
+    // Последний снимок + хвост журнала; возвращает журнал, готовый к дописыванию
+    private Journal recover(GameState state, Path dir) throws IOException {
+        long from = Journal.latestSnapshot(dir);
+        BinarySave.read(state, dir.resolve(Journal.snapshotName(from)));
+        // история до снимка не восстанавливается; поэтому после каждого undo/redo журнал пишет снимок,
+        // и воспроизводить undo/redo из хвоста журнала не приходится
+        if (undoDepth > 0) WorldHistory.attach(state, undoDepth);
+        List<Journal.Event> events = Journal.readEvents(dir);
+        PrintStream out = state.getOut();
+        state.setOut(OutputSinks.discard());
+        try {
+            replay(state, dir, events, from);
+        } finally {
+            state.setOut(out);
+        }
+        long last = events.isEmpty() ? from : Math.max(from, events.getLast().seq());
+        return Journal.resume(dir, last, snapshotEvery);
+    }
+
+    private long replay(GameState state, Path dir, List<Journal.Event> events, long from) throws IOException {
+        CommandLine cl = new CommandLine();
+        long n = 0;
+        for (Journal.Event e : events) {
+            if (e.seq() <= from) continue;
+            Command c = trie.find(cl.parse(e.line()));
+            if (c == commands.get("load")) {
+                BinarySave.read(state, dir.resolve(Journal.loadName(e.seq())));
+                if (undoDepth > 0) WorldHistory.attach(state, undoDepth);
+            } else if (c == null || externalOnly.contains(c)) {
+                state.addScore(1);
+            } else {
+                execute(state, cl);
+            }
+            n++;
+        }
+        return n;
+    }
+
+    private static GameState emptyState(PrintStream out) {
+        GameState state = new GameState();
+        state.setOut(out);
+        state.setPlayer(new Player("", 0, 0));
+        return state;
+    }
+
+    // Спрашивает имя и создаёт мир; null, если ввод закончился раньше
+    public GameState openSession(BufferedReader in, PrintStream out) throws IOException {
+        out.print("Введите ваше имя: ");
+        out.flush();
+        String name = in.readLine();
+        if (name == null) return null;
+        return newState(name.trim(), out);
+    }
+
+    CommandMetrics metrics() {
+        return metrics;
+    }
+
+    GameState newState(String name, PrintStream out) {
+        GameState state;
+        if (startRoom == null) {
+            state = newSession(name, out);
+        } else {
+            state = new GameState();
+            state.setOut(out);
+            state.setPlayer(new Player(name, StarterWorld.PLAYER_HP, StarterWorld.PLAYER_ATTACK));
+            state.setCurrent(startRoom.get());
+        }
+        if (undoDepth > 0) WorldHistory.attach(state, undoDepth);
+        return state;
+    }
+
+    // Пакетный режим: команды из файла по одной в строке (пустые и начинающиеся с # пропускаются),
+    // без вопроса об имени. Идёт до конца файла или до конца сессии (exit, смерть игрока);
+    // в конце печатает в System.out, сколько команд выполнено и с какой скоростью
+    public void script(Path file, PrintStream out) throws IOException {
+        GameState state = newState(playerName != null ? playerName : "Скрипт", out);
+        CommandLine cl = new CommandLine();
+        Autosave.Session saves = autosave == null ? null : autosave.session(metrics.autosave());
+        long n = 0, failed = 0;
+        long start = System.nanoTime();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (String line; !state.isFinished() && (line = in.readLine()) != null; ) {
+                if (cl.parse(line).isBlank() || cl.nameLength() > 0 && cl.nameCharAt(0) == '#') continue;
+                if (!execute(state, cl)) failed++;
+                else if (saves != null) saves.changed(state);
+                n++;
+            }
+        } finally {
+            if (saves != null) saves.close(state);
+            out.flush();// в замер входит и запись всего вывода
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("Выполнено команд: %d (с ошибкой: %d) за %.1f мс (%.0f команд/с)%n",
+                n, failed, nanos / 1e6, n * 1e9 / Math.max(1, nanos));
+    }
+
+    // Цикл команд одной сессии; возвращается по exit, смерти игрока или концу ввода
+    public void play(GameState state, BufferedReader in) throws IOException {
+        play(state, in, null);
+    }
+
+    private void play(GameState state, BufferedReader in, Journal journal) throws IOException {
+        PrintStream out = state.getOut();
+        out.println("Добро пожаловать в игру DungeonMini (TEMPLATE).  Если Вы хотите загрузить предыдущую игру, введите load. Для вызова команд введите 'help'.");
+        CommandLine cl = new CommandLine();// буфер разбора переиспользуется всю сессию
+        Autosave.Session saves = autosave == null ? null : autosave.session(metrics.autosave());
+        long seen = clock == null ? 0 : clock.now();
+        try {
+            while (!state.isFinished()) {
+                out.print("> ");
+                out.flush();
+                String line = in.readLine();
+                if (line == null) break;
+                if (clock != null) {
+                    // тики, прошедшие пока игрок думал, выполняются до его команды — как команды tick не больше
+                    // TimingWheel.MAX_DELAY каждая; seen сдвигается только на выполненные тики
+                    long now = clock.now();
+                    while (now > seen && !state.isFinished()) {
+                        long n = Math.min(now - seen, TimingWheel.MAX_DELAY);
+                        if (!run(state, cl.parse("tick " + n), journal, saves)) break;
+                        seen += n;
+                    }
+                    if (state.isFinished()) break;
+                }
+                if (cl.parse(line).isBlank()) continue;
+                run(state, cl, journal, saves);
+            }
+        } finally {
+            if (saves != null) saves.close(state);// и при обрыве соединения
+        }
+    }
+
+    // false — команда не выполнена
+    private boolean run(GameState state, CommandLine cl, Journal journal, Autosave.Session saves) {
+        if (!execute(state, cl)) return false;
+        if (journal != null) {
+            try {
+                Command c = trie.find(cl);
+                journal.append(state, cl, c == commands.get("load"), travel.contains(c));
+            } catch (IOException e) {
+                state.getOut().println("Ошибка записи журнала: " + e.getMessage());
+            }
+        }
+        if (saves != null) saves.changed(state);
+        return true;
+    }
+
+    // Разбор и выполнение одной строки ввода
+    public void execute(GameState state, String line) {
+        CommandLine cl = new CommandLine().parse(line);
+        if (!cl.isBlank()) execute(state, cl);
+    }
+
+    // Выполнение уже разобранной строки; сама диспетчеризация объектов не создаёт.
+    // true — команда выполнена успешно
+    public boolean execute(GameState state, CommandLine line) {
+        Command c = trie.find(line);
+        CommandMetrics.Entry m = c == null ? metrics.unknown() : metered.get(c);
+        CommandMetrics.Outcome outcome = CommandMetrics.Outcome.FAILED;
+        GameEvents.CommandExecuted event = GameEvents.commandStarted();
+        long allocated = CommandMetrics.allocatedBytes();
+        long start = System.nanoTime();
+        try {
+            if (c == null) throw unknownCommand(line.name());
+            c.execute(state, line);
+            if (!unscored.contains(c)) state.addScore(1);
+            if (!externalOnly.contains(c) && !travel.contains(c)) commitVersion(state);
+            outcome = CommandMetrics.Outcome.OK;
+            return true;
+        } catch (InvalidCommandException e) {
+            outcome = CommandMetrics.Outcome.INVALID;
+            state.getOut().println("Ошибка: " + e.getMessage());
+        } catch (Exception e) {
+            state.getOut().println("Непредвиденная ошибка: " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        } finally {
+            m.record(outcome, System.nanoTime() - start, allocated);
+            if (event != null) {
+                GameEvents.commandFinished(event, c == null ? line.name() : m.name(), line.size(),
+                        state.getPlayer().getName(), outcome.name());
+            }
+        }
+        return false;
+    }
+
+    private InvalidCommandException unknownCommand(String name) {
+        String cmd = name.toLowerCase(Locale.ROOT);
+        List<String> candidates = commands.keySet().stream().filter(k -> k.startsWith(cmd)).toList();
+        if (candidates.size() > 1) {
+            return new InvalidCommandException("Неоднозначная команда: " + cmd + " (" + String.join(", ", candidates) + ")");
+        }
+        return new InvalidCommandException("Неизвестная команда: " + cmd);
+    }
 }
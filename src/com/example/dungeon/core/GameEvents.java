@@ -0,0 +1,103 @@
+package com.example.dungeon.core;
+
+import jdk.jfr.*;
+
+// События JDK Flight Recorder: по ним в записи видно, к какой команде, сохранению или переходу между комнатами
+// относятся пауза GC или ожидание ввода-вывода. Поток события JFR записывает сам (в сервере это поток сессии).
+// Первая загрузка подкласса jdk.jfr.Event поднимает весь JFR (около 0,4 с), поэтому пока JFR не запущен
+// (ключом -XX:StartFlightRecording или командой record), события не создаются вовсе — *Started() возвращают null.
+// Когда JFR работает, но запись не идёт, shouldCommit() ложно и поля не заполняются.
+final class GameEvents {
+    private static volatile boolean active = FlightRecorder.isInitialized();
+
+    private GameEvents() {
+    }
+
+    // Вызывается перед запуском записи из игры (record start)
+    static void activate() {
+        active = true;
+    }
+
+    static boolean active() {
+        return active;
+    }
+
+    static CommandExecuted commandStarted() {
+        if (!active) return null;
+        CommandExecuted e = new CommandExecuted();
+        e.begin();
+        return e;
+    }
+
+    static void commandFinished(CommandExecuted e, String command, int args, String session, String outcome) {
+        e.end();
+        if (!e.shouldCommit()) return;
+        e.command = command;
+        e.args = args;
+        e.session = session;
+        e.outcome = outcome;
+        e.commit();
+    }
+
+    static SaveLoadCall saveLoadStarted() {
+        if (!active) return null;
+        SaveLoadCall e = new SaveLoadCall();
+        e.begin();
+        return e;
+    }
+
+    // Вызывающий проверяет active(), чтобы не собирать строки зря
+    static void roomTransition(String session, String from, String to, String direction) {
+        RoomTransition e = new RoomTransition();
+        if (!e.shouldCommit()) return;
+        e.session = session;
+        e.from = from;
+        e.to = to;
+        e.direction = direction;
+        e.commit();
+    }
+
+    @Name("dungeon.Command")
+    @Label("Команда")
+    @Category("DungeonMini")
+    @Description("Выполнение одной команды игрока")
+    static final class CommandExecuted extends Event {
+        @Label("Команда")
+        String command;
+        @Label("Аргументов")
+        int args;
+        @Label("Игрок")
+        String session;
+        @Label("Итог")
+        String outcome;
+    }
+
+    @Name("dungeon.SaveLoad")
+    @Label("Сохранение/загрузка")
+    @Category("DungeonMini")
+    @Description("Вызов SaveLoad: save, load или чтение таблицы лидеров")
+    static final class SaveLoadCall extends Event {
+        @Label("Операция")
+        String operation;
+        @Label("Файл")
+        String file;
+        @Label("Байт")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("dungeon.RoomTransition")
+    @Label("Переход")
+    @Category("DungeonMini")
+    @Description("Игрок перешёл в соседнюю комнату")
+    static final class RoomTransition extends Event {
+        @Label("Игрок")
+        String session;
+        @Label("Откуда")
+        String from;
+        @Label("Куда")
+        String to;
+        @Label("Направление")
+        String direction;
+    }
+}
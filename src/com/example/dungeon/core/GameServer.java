@@ -0,0 +1,47 @@
+package com.example.dungeon.core;
+
+import com.example.dungeon.model.GameState;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Режим сервера: каждое TCP-подключение — отдельная сессия со своим GameState на виртуальном потоке.
+// Таблица команд (Game) одна на всех.
+public class GameServer {
+    private final Game game;
+    private final int port;
+    private final AtomicLong sessions = new AtomicLong();
+
+    public GameServer(Game game, int port) {
+        this.game = game;
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress())) {
+            System.out.println("Сервер DungeonMini слушает " + server.getLocalSocketAddress());
+            while (true) {
+                Socket socket = server.accept();
+                long id = sessions.incrementAndGet();
+                Thread.ofVirtual().name("session-" + id).start(() -> serve(socket));
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(socket.getOutputStream(), false, StandardCharsets.UTF_8)) {
+            GameState state = game.openSession(in, out);
+            if (state != null) game.play(state, in);
+            out.flush();
+        } catch (IOException e) {
+            // клиент отключился — завершаем только эту сессию
+            System.err.println("Сессия " + Thread.currentThread().getName() + " прервана: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.dungeon.core;
+
+import com.example.dungeon.model.GameState;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Журнал успешных команд одной сессии и снимки состояния в каталоге dir:
+//   journal.log          — строки "номер<TAB>команда аргументы", только дописываются
+//   snapshot-<N>.bin     — состояние после события N (BinarySave); хранятся snapshot-0 и последний
+//   load-<N>.bin         — состояние сразу после команды load с номером N: load читает внешний файл,
+//                          поэтому при воспроизведении вместо неё подставляется этот снимок
+// Восстановление = последний снимок + хвост журнала.
+final class Journal implements Closeable {
+    static final String LOG = "journal.log";
+
+    private final Path dir;
+    private final BufferedWriter log;
+    private final int snapshotEvery;
+    private long seq;
+    private long lastSnapshot;
+
+    private Journal(Path dir, BufferedWriter log, int snapshotEvery, long seq, long lastSnapshot) {
+        this.dir = dir;
+        this.log = log;
+        this.snapshotEvery = snapshotEvery;
+        this.seq = seq;
+        this.lastSnapshot = lastSnapshot;
+    }
+
+    static boolean exists(Path dir) {
+        return Files.exists(dir.resolve(LOG)) && Files.exists(dir.resolve(snapshotName(0)));
+    }
+
+    // Новый журнал: начальный мир сохраняется как snapshot-0. Удаляются только снимки прошлого журнала —
+    // каталог может быть общим с сохранениями и автосохранениями
+    static Journal create(Path dir, GameState initial, int snapshotEvery) throws IOException {
+        Files.createDirectories(dir);
+        try (Stream<Path> old = Files.list(dir)) {
+            for (Path p : old.filter(p -> isSnapshot(p.getFileName().toString())).toList()) Files.delete(p);
+        }
+        BinarySave.write(initial, dir.resolve(snapshotName(0)));
+        BufferedWriter w = Files.newBufferedWriter(dir.resolve(LOG), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new Journal(dir, w, snapshotEvery, 0, 0);
+    }
+
+    // Продолжение существующего журнала после восстановления
+    static Journal resume(Path dir, long lastSeq, int snapshotEvery) throws IOException {
+        BufferedWriter w = Files.newBufferedWriter(dir.resolve(LOG), StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        return new Journal(dir, w, snapshotEvery, lastSeq, latestSnapshot(dir));
+    }
+
+    // Дописывает событие; load сразу сохраняет своё состояние, остальные — снимок раз в snapshotEvery событий
+    // или сразу, если snapshot: undo/redo может уйти в версию до последнего снимка, а восстановленная
+    // из снимка история этих версий не знает
+    void append(GameState s, CommandLine line, boolean load, boolean snapshot) throws IOException {
+        seq++;
+        log.write(Long.toString(seq));
+        log.write('\t');
+        line.writeTo(log);
+        log.newLine();
+        log.flush();// при падении процесса событие уже у ОС
+        if (load) {
+            BinarySave.write(s, dir.resolve(loadName(seq)));
+        } else if (snapshot || seq - lastSnapshot >= snapshotEvery) {
+            snapshot(s);
+        }
+    }
+
+    private void snapshot(GameState s) throws IOException {
+        BinarySave.write(s, dir.resolve(snapshotName(seq)));
+        if (lastSnapshot != 0) Files.deleteIfExists(dir.resolve(snapshotName(lastSnapshot)));
+        lastSnapshot = seq;
+    }
+
+    long seq() {
+        return seq;
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    // Переносит журнал и его снимки в подкаталог finished-<время>; в dir после этого журнала нет
+    static Path archive(Path dir) throws IOException {
+        Path to = dir.resolve("finished-" + System.currentTimeMillis());
+        Files.createDirectories(to);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : files.toList()) {
+                String name = p.getFileName().toString();
+                if (name.equals(LOG) || isSnapshot(name)) Files.move(p, to.resolve(name));
+            }
+        }
+        return to;
+    }
+
+    static String snapshotName(long seq) {
+        return "snapshot-" + seq + ".bin";
+    }
+
+    static String loadName(long seq) {
+        return "load-" + seq + ".bin";
+    }
+
+    static long latestSnapshot(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.mapToLong(p -> seqOf(p.getFileName().toString(), "snapshot-")).filter(n -> n >= 0).max().orElse(0);
+        }
+    }
+
+    // Файл журнала: snapshot-<N>.bin или load-<N>.bin
+    private static boolean isSnapshot(String name) {
+        return seqOf(name, "snapshot-") >= 0 || seqOf(name, "load-") >= 0;
+    }
+
+    // N из имени prefix<N>.bin; -1 — имя не такое
+    private static long seqOf(String name, String prefix) {
+        if (!name.startsWith(prefix) || !name.endsWith(".bin")) return -1;
+        String digits = name.substring(prefix.length(), name.length() - ".bin".length());
+        if (digits.isEmpty() || digits.length() > 18 || !digits.chars().allMatch(c -> c >= '0' && c <= '9')) return -1;
+        return Long.parseLong(digits);
+    }
+
+    record Event(long seq, String line) {
+    }
+
+    // Недописанная при падении последняя строка пропускается
+    static List<Event> readEvents(Path dir) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader r = Files.newBufferedReader(dir.resolve(LOG), StandardCharsets.UTF_8)) {
+            for (String line; (line = r.readLine()) != null; ) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) continue;
+                try {
+                    events.add(new Event(Long.parseLong(line, 0, tab, 10), line.substring(tab + 1)));
+                } catch (NumberFormatException e) {
+                    // битая строка — пропускаем
+                }
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,402 @@
+package com.example.dungeon.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// Индекс таблицы лидеров поверх scores.csv: топ-K строк (min-куча), лучший результат каждого игрока
+// и дерево рангов по лучшим результатам. Индекс помнит, сколько байт CSV он уже учёл (offset),
+// поэтому после дописывания строк разбирается только новый хвост; учитываются только строки, дописанные
+// целиком (до '\n'), недописанная последняя строка ждёт следующего обновления.
+// Файл индекса рядом с CSV тоже только дописывается: после каждого обновления в него уходят изменения —
+// новые лучшие результаты игроков (BEST) и строки, попавшие в топ (TOP_ROW), — и запись SYNC с offset
+// и опознанием CSV: ключ файла ОС (inode) и CRC32 первых байт. Всё, что после последней SYNC (обрыв записи),
+// при чтении отбрасывается. Если CSV заменён другим файлом, укоротился или его начало изменилось,
+// индекс строится заново полным проходом. Когда изменений накопится много, индекс переписывается целиком.
+final class Leaderboard {
+    static final int TOP = 10;
+    private static final int MAGIC = 0x44474E4C;// "DGNL"
+    private static final short VERSION = 2;
+    private static final int HEAD = 256;// столько первых байт CSV входит в CRC для опознания файла
+    private static final byte SYNC = 0, BEST = 1, TOP_ROW = 2;
+
+    record Score(String player, int score) {
+    }
+
+    private final Path csv;
+    private final Path index;
+    private final PriorityQueue<Score> top = new PriorityQueue<>(TOP + 1, Comparator.comparingInt(Score::score));
+    private final Map<String, Integer> best = new HashMap<>();
+    private final RankTree ranks = new RankTree();
+    private long offset;
+    private String fileKey;// ключ файла CSV (BasicFileAttributes.fileKey), "null" — ОС его не даёт
+    private int headLength;// сколько первых байт CSV учтено в headCrc
+    private long headCrc;
+    private final ByteArrayOutputStream delta = new ByteArrayOutputStream();// записи, ещё не дописанные в индекс
+    private final DataOutputStream deltaOut = new DataOutputStream(delta);
+    private int records;// записей в файле индекса
+    private int pending;// записей в delta
+    private boolean rewrite;// индекс нужно переписать целиком
+
+    Leaderboard(Path csv, Path index) {
+        this.csv = csv;
+        this.index = index;
+        if (!readIndex()) {
+            reset();
+            rewrite = true;
+        }
+        refresh();
+    }
+
+    // Топ-K по убыванию очков
+    synchronized List<Score> top() {
+        refresh();
+        List<Score> list = new ArrayList<>(top);
+        list.sort(Comparator.comparingInt(Score::score).reversed());
+        return list;
+    }
+
+    // Лучший результат игрока или -1
+    synchronized int best(String player) {
+        refresh();
+        return best.getOrDefault(player, -1);
+    }
+
+    // Место игрока среди всех игроков по лучшему результату (1 — первое), O(log n)
+    synchronized int rank(String player) {
+        refresh();
+        Integer b = best.get(player);
+        return b == null ? -1 : ranks.countGreater(b) + 1;
+    }
+
+    synchronized int players() {
+        return best.size();
+    }
+
+    // Дочитывает строки, дописанные в CSV после последнего обновления, и дописывает изменения в индекс
+    synchronized void refresh() {
+        try {
+            if (!Files.exists(csv)) {
+                if (offset == 0) return;
+                reset();// файл удалён — индекс пустой
+                rewrite = true;
+                writeIndex();
+                return;
+            }
+            BasicFileAttributes a = Files.readAttributes(csv, BasicFileAttributes.class);
+            long size = a.size();
+            String key = String.valueOf(a.fileKey());
+            if (offset > 0 && !sameCsv(key, size)) {// файл заменён или переписан — строим заново
+                reset();
+                rewrite = true;
+            }
+            if (size > offset) scan(size);
+            fileKey = key;
+            if (headLength < HEAD && offset > headLength) {
+                headLength = (int) Math.min(HEAD, offset);
+                headCrc = crc(headLength);
+            }
+            if (rewrite || records > 4 * (best.size() + TOP) + 64) writeIndex();
+            else if (delta.size() > 0) appendIndex();
+        } catch (IOException e) {
+            System.err.println("Не удалось обновить таблицу лидеров: " + e.getMessage());
+        }
+    }
+
+    private boolean sameCsv(String key, long size) throws IOException {
+        return key.equals(fileKey) && size >= offset && crc(headLength) == headCrc;
+    }
+
+    private long crc(int n) throws IOException {
+        CRC32 crc = new CRC32();
+        if (n == 0) return crc.getValue();
+        try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(n);
+            while (buf.hasRemaining()) if (ch.read(buf) < 0) break;
+            crc.update(buf.flip());
+        }
+        return crc.getValue();
+    }
+
+    private void reset() {
+        top.clear();
+        best.clear();
+        ranks.clear();
+        offset = 0;
+        headLength = 0;
+        delta.reset();
+        pending = 0;
+    }
+
+    // Строки из [offset, size) до последнего '\n'; offset сдвигается за последнюю целую строку
+    private void scan(long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+            ch.position(offset);
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            long pos = offset;// начало первой неразобранной строки в файле
+            boolean header = offset == 0;
+            while (pos + buf.position() < size) {
+                if (!buf.hasRemaining()) {// строка длиннее буфера
+                    buf = ByteBuffer.allocate(buf.capacity() * 2).put(buf.flip());
+                }
+                if (ch.read(buf) < 0) break;
+                byte[] b = buf.array();
+                int start = 0;
+                for (int i = 0; i < buf.position(); i++) {
+                    if (b[i] != '\n') continue;
+                    if (header) header = false;
+                    else parse(new String(b, start, i - start, StandardCharsets.UTF_8));
+                    start = i + 1;
+                }
+                pos += start;
+                buf.limit(buf.position()).position(start).compact();
+            }
+            offset = pos;
+        }
+    }
+
+    private void parse(String line) throws IOException {
+        int first = line.indexOf(','), last = line.lastIndexOf(',');
+        if (first < 0 || last <= first) return;
+        try {
+            add(line.substring(first + 1, last), Integer.parseInt(line, last + 1, line.length(), 10));
+        } catch (NumberFormatException e) {
+            // битая строка — пропускаем
+        }
+    }
+
+    private void add(String player, int score) throws IOException {
+        if (offerTop(new Score(player, score))) {
+            deltaOut.writeByte(TOP_ROW);
+            deltaOut.writeUTF(player);
+            deltaOut.writeInt(score);
+            pending++;
+        }
+        Integer old = best.get(player);
+        if (old == null || score > old) {
+            if (old != null) ranks.remove(old);
+            ranks.add(score);
+            best.put(player, score);
+            deltaOut.writeByte(BEST);
+            deltaOut.writeUTF(player);
+            deltaOut.writeInt(score);
+            pending++;
+        }
+    }
+
+    // true — строка вошла в топ
+    private boolean offerTop(Score s) {
+        if (top.size() < TOP) return top.add(s);
+        if (s.score() <= top.peek().score()) return false;
+        top.poll();
+        return top.add(s);
+    }
+
+    // Записи до последней SYNC; хвост после неё (обрыв записи) обрезается
+    private boolean readIndex() {
+        if (!Files.exists(index)) return false;
+        try {
+            byte[] bytes = Files.readAllBytes(index);
+            ByteArrayInputStream buf = new ByteArrayInputStream(bytes);
+            DataInputStream in = new DataInputStream(buf);
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) return false;
+            List<Score> tops = new ArrayList<>(), bests = new ArrayList<>();
+            long valid = -1;
+            int n = 0;
+            try {
+                while (buf.available() > 0) {
+                    byte type = in.readByte();
+                    if (type == SYNC) {
+                        long off = in.readLong();
+                        String key = in.readUTF();
+                        int headLen = in.readInt();
+                        long crc = in.readLong();
+                        for (Score s : tops) offerTop(s);
+                        for (Score s : bests) best.put(s.player(), s.score());
+                        tops.clear();
+                        bests.clear();
+                        offset = off;
+                        fileKey = key;
+                        headLength = headLen;
+                        headCrc = crc;
+                        valid = bytes.length - buf.available();
+                        records = ++n;
+                        continue;
+                    }
+                    if (type != BEST && type != TOP_ROW) break;
+                    (type == BEST ? bests : tops).add(new Score(in.readUTF(), in.readInt()));
+                    n++;
+                }
+            } catch (EOFException e) {
+                // оборванная запись — хвост отбрасывается
+            }
+            if (valid < 0) return false;
+            for (int score : best.values()) ranks.add(score);
+            if (valid < bytes.length) {
+                try (FileChannel ch = FileChannel.open(index, StandardOpenOption.WRITE)) {
+                    ch.truncate(valid);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            reset();
+            return false;
+        }
+    }
+
+    private void sync(DataOutputStream out) throws IOException {
+        out.writeByte(SYNC);
+        out.writeLong(offset);
+        out.writeUTF(fileKey);
+        out.writeInt(headLength);
+        out.writeLong(headCrc);
+    }
+
+    // Дописывает накопленные изменения и SYNC
+    private void appendIndex() throws IOException {
+        sync(deltaOut);
+        try (OutputStream out = Files.newOutputStream(index, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            delta.writeTo(out);
+        }
+        records += pending + 1;
+        delta.reset();
+        pending = 0;
+    }
+
+    // Полный индекс: текущий топ и лучшие результаты без истории изменений
+    private void writeIndex() throws IOException {
+        Path tmp = index.resolveSibling(index.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            for (Score s : top) {
+                out.writeByte(TOP_ROW);
+                out.writeUTF(s.player());
+                out.writeInt(s.score());
+            }
+            for (Map.Entry<String, Integer> e : best.entrySet()) {
+                out.writeByte(BEST);
+                out.writeUTF(e.getKey());
+                out.writeInt(e.getValue());
+            }
+            sync(out);
+        }
+        Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = top.size() + best.size() + 1;
+        delta.reset();
+        pending = 0;
+        rewrite = false;
+    }
+
+    // Декартово дерево по значению очков с количеством и суммой в поддереве:
+    // сколько игроков набрали больше score — за O(log n)
+    private static final class RankTree {
+        private static final class Node {
+            final int key;
+            final int priority;
+            int count;
+            int total;
+            Node left, right;
+
+            Node(int key, int priority) {
+                this.key = key;
+                this.priority = priority;
+                this.count = this.total = 1;
+            }
+        }
+
+        private Node root;
+        private final Random random = new Random(42);
+
+        void clear() {
+            root = null;
+        }
+
+        void add(int key) {
+            root = insert(root, key);
+        }
+
+        void remove(int key) {
+            root = delete(root, key);
+        }
+
+        int countGreater(int key) {
+            int n = 0;
+            for (Node t = root; t != null; ) {
+                if (key < t.key) {
+                    n += t.count + total(t.right);
+                    t = t.left;
+                } else {
+                    t = t.right;
+                }
+            }
+            return n;
+        }
+
+        private static int total(Node t) {
+            return t == null ? 0 : t.total;
+        }
+
+        private static void update(Node t) {
+            t.total = t.count + total(t.left) + total(t.right);
+        }
+
+        private Node insert(Node t, int key) {
+            if (t == null) return new Node(key, random.nextInt());
+            if (key == t.key) t.count++;
+            else if (key < t.key) {
+                t.left = insert(t.left, key);
+                if (t.left.priority > t.priority) t = rotateRight(t);
+            } else {
+                t.right = insert(t.right, key);
+                if (t.right.priority > t.priority) t = rotateLeft(t);
+            }
+            update(t);
+            return t;
+        }
+
+        private Node delete(Node t, int key) {
+            if (t == null) return null;
+            if (key < t.key) t.left = delete(t.left, key);
+            else if (key > t.key) t.right = delete(t.right, key);
+            else if (t.count > 1) t.count--;
+            else return merge(t.left, t.right);
+            update(t);
+            return t;
+        }
+
+        private Node merge(Node a, Node b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            if (a.priority > b.priority) {
+                a.right = merge(a.right, b);
+                update(a);
+                return a;
+            }
+            b.left = merge(a, b.left);
+            update(b);
+            return b;
+        }
+
+        private static Node rotateRight(Node t) {
+            Node l = t.left;
+            t.left = l.right;
+            l.right = t;
+            update(t);
+            return l;
+        }
+
+        private static Node rotateLeft(Node t) {
+            Node r = t.right;
+            t.right = r.left;
+            r.left = t;
+            update(t);
+            return r;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.dungeon.core;
+
+import com.example.dungeon.model.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Нагрузка без сети: bots ботов внутри JVM, у каждого своя сессия (Game.newState — со всеми режимами мира:
+// --shared-world, --common-world, --undo) и свой виртуальный поток. Бот выбирает команду по весам смеси
+// и выполняет её через Game.execute, как сервер, поэтому время команд попадает в общие CommandMetrics.
+// move — случайный проход из Room.getNeighbors(), take/use — случайный предмет комнаты/инвентаря
+// (если нечего брать — look). Погибший или вышедший бот начинает новую сессию.
+// У каждого бота свой SplittableRandom, отщеплённый от корневого в порядке номеров, поэтому при одном seed
+// бот выбирает те же команды (в общем мире порядок ходов разных ботов всё равно решает планировщик).
+// Первые warmup секунд не считаются: после прогрева метрики команд обнуляются.
+// save в смеси по умолчанию нет; если его добавить, сохранения и очки ботов пишутся во временный каталог,
+// а не в файлы игрока в текущем каталоге.
+public final class LoadGenerator {
+    public static final String DEFAULT_MIX = "move=40,look=20,take=10,use=5,fight=15,inventory=8";
+    private static final List<String> KINDS = List.of("move", "look", "take", "use", "fight", "inventory", "save");
+
+    private final Game game;
+    private final String[] kinds;
+    private final int[] cumulative;// накопленные веса kinds
+    private final LongAdder respawns = new LongAdder();
+    private volatile long deadline;
+
+    private LoadGenerator(Game game, String mix) {
+        this.game = game;
+        List<String> names = new ArrayList<>();
+        List<Integer> sums = new ArrayList<>();
+        int total = 0;
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=", 2);
+            String kind = kv[0].trim().toLowerCase(Locale.ROOT);
+            if (!KINDS.contains(kind) || kv.length < 2) {
+                throw new IllegalArgumentException("Неверная смесь команд: " + part + " (ожидается <команда>=<вес>, команды: "
+                        + String.join(", ", KINDS) + ")");
+            }
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight < 0) throw new IllegalArgumentException("Отрицательный вес: " + part);
+            if (weight == 0) continue;
+            total += weight;
+            names.add(kind);
+            sums.add(total);
+        }
+        if (total == 0) throw new IllegalArgumentException("В смеси команд нет ни одного веса больше нуля");
+        this.kinds = names.toArray(new String[0]);
+        this.cumulative = sums.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static void run(Game game, PrintStream out, int bots, long seconds, long warmup, String mix, long seed)
+            throws IOException, InterruptedException {
+        LoadGenerator gen = new LoadGenerator(game, mix);
+        if (Arrays.asList(gen.kinds).contains("save")) {
+            Path dir = Files.createTempDirectory("dungeon-bots");
+            SaveLoad.useDirectory(dir);
+            out.println("save ботов пишет в " + dir);
+        }
+        long start = System.nanoTime();
+        gen.deadline = start + (warmup + seconds) * 1_000_000_000L;
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Thread> threads = new ArrayList<>(bots);
+        for (int i = 0; i < bots; i++) {
+            String name = "Бот-" + i;
+            SplittableRandom rnd = root.split();
+            threads.add(Thread.ofVirtual().name(name).start(() -> gen.bot(name, rnd)));
+        }
+        Thread.sleep(warmup * 1000);
+        CommandMetrics metrics = game.metrics();
+        metrics.reset();
+        gen.respawns.reset();
+        long[] gcBefore = gc();
+        long measured = System.nanoTime();
+        for (Thread t : threads) t.join();
+        long nanos = System.nanoTime() - measured;
+        long[] gcAfter = gc();
+        long commands = metrics.calls();
+
+        out.printf("Ботов: %d; смесь: %s; seed %d; прогрев %d с, замер %.1f с%n", bots, mix, seed, warmup, nanos / 1e9);
+        out.printf("Команд: %,d (%,.0f команд/с); новых сессий после смерти или выхода: %,d%n",
+                commands, commands * 1e9 / Math.max(1, nanos), gen.respawns.sum());
+        out.printf("Сборок мусора: %d, время в GC: %d мс (%.1f%% замера)%n", gcAfter[0] - gcBefore[0],
+                gcAfter[1] - gcBefore[1], 100.0 * (gcAfter[1] - gcBefore[1]) / Math.max(1, nanos / 1_000_000));
+        metrics.print(out);// байт на вызов нет: виртуальные потоки не считают выделения
+    }
+
+    // Вывод у бота свой, а не общий OutputSinks.discard(): у PrintStream внутри ReentrantLock, и save, который
+    // печатает под монитором SaveLoad, занимал бы поток-носитель, пока ждёт этот замок у других ботов, — а те
+    // ждут свободного носителя (в Java 21 виртуальный поток в synchronized не отпускает носитель)
+    private void bot(String name, SplittableRandom rnd) {
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        GameState state = game.newState(name, out);
+        CommandLine cl = new CommandLine();
+        while (System.nanoTime() < deadline) {
+            if (state.isFinished()) {
+                state = game.newState(name, out);
+                respawns.increment();
+            }
+            game.execute(state, cl.parse(next(state, rnd)));
+        }
+    }
+
+    // Следующая команда бота
+    private String next(GameState state, SplittableRandom rnd) {
+        int w = rnd.nextInt(cumulative[cumulative.length - 1]);
+        int k = 0;
+        while (cumulative[k] <= w) k++;
+        Room room = state.getCurrent();
+        switch (kinds[k]) {
+            case "move" -> {
+                String dir = pick(room.getNeighbors().keySet(), rnd);
+                if (dir != null) return "move " + dir;
+            }
+            case "take" -> {
+                List<Item> items = room.getItems();
+                if (!items.isEmpty()) return "take " + items.get(rnd.nextInt(items.size())).getName();
+            }
+            case "use" -> {
+                List<Item> items = state.getPlayer().getInventory();
+                if (!items.isEmpty()) return "use " + items.get(rnd.nextInt(items.size())).getName();
+            }
+            default -> {
+                return kinds[k];
+            }
+        }
+        return "look";
+    }
+
+    private static String pick(Collection<String> keys, SplittableRandom rnd) {
+        if (keys.isEmpty()) return null;
+        int i = rnd.nextInt(keys.size());
+        for (String key : keys) {
+            if (i-- == 0) return key;
+        }
+        return null;
+    }
+
+    // Сумма по всем сборщикам: {число сборок, миллисекунд}
+    private static long[] gc() {
+        long count = 0, millis = 0;
+        for (GarbageCollectorMXBean b : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, b.getCollectionCount());
+            millis += Math.max(0, b.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.dungeon.core;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+// Куда сессия печатает ответы. Все команды пишут через GameState.getOut(), поэтому приёмник — обычный PrintStream,
+// а отличаются реализации только тем, когда байты уходят дальше:
+//   buffered — копит вывод в буфере и отдаёт его крупными кусками, без сброса на каждой строке,
+//   async    — то же, но запись в target делает отдельный поток-писатель, команды его не ждут,
+//   discard  — всё выбрасывает (бенчмарки и прогоны, где важна только скорость движка).
+// Перед чтением ввода или печатью итогов приёмник нужно сбросить flush(); async.flush() ждёт, пока писатель
+// допишет всё, что было до него, а close() ещё и останавливает поток.
+public final class OutputSinks {
+    static final int BUFFER = 1 << 16;
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private OutputSinks() {
+    }
+
+    public static PrintStream buffered(PrintStream target) {
+        return buffered(target, target.charset());
+    }
+
+    public static PrintStream buffered(OutputStream target, Charset charset) {
+        return new PrintStream(new BufferedOutputStream(target, BUFFER), false, charset);
+    }
+
+    public static PrintStream async(PrintStream target) {
+        return async(target, target.charset());
+    }
+
+    public static PrintStream async(OutputStream target, Charset charset) {
+        return new PrintStream(new BufferedOutputStream(new AsyncOutputStream(target), BUFFER), false, charset);
+    }
+
+    // Один общий экземпляр: писать в него можно из любых потоков
+    public static PrintStream discard() {
+        return DISCARD;
+    }
+
+    // По имени из командной строки: buffered, async или none
+    public static PrintStream named(String name, PrintStream target) {
+        return switch (name) {
+            case "buffered" -> buffered(target);
+            case "async" -> async(target);
+            case "none" -> discard();
+            default -> throw new IllegalArgumentException("Неизвестный вывод: " + name + " (buffered, async, none)");
+        };
+    }
+
+    // Куски вывода уходят в ограниченную очередь, единственный поток-писатель переносит их в target.
+    // Очередь ограничена, поэтому слишком быстрый производитель в конце концов ждёт писателя, а не копит память
+    private static final class AsyncOutputStream extends OutputStream {
+        private static final byte[] CLOSE = new byte[0];
+
+        private final OutputStream target;
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(64);
+        private final Thread writer;
+        private volatile IOException failure;
+        private boolean closed;
+
+        AsyncOutputStream(OutputStream target) {
+            this.target = target;
+            this.writer = Thread.ofPlatform().name("output-writer").daemon(true).start(this::drain);
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    Object chunk = queue.take();
+                    if (chunk == CLOSE) break;
+                    try {
+                        if (chunk instanceof CountDownLatch flushed) {
+                            target.flush();
+                            flushed.countDown();
+                        } else {
+                            target.write((byte[]) chunk);
+                        }
+                    } catch (IOException e) {
+                        failure = e;// сообщим производителю при следующей записи
+                        if (chunk instanceof CountDownLatch flushed) flushed.countDown();
+                    }
+                }
+                target.flush();
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void put(Object chunk) throws IOException {
+            if (closed) throw new IOException("Вывод закрыт");
+            if (failure != null) throw failure;
+            try {
+                queue.put(chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            put(new byte[]{(byte) b});
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) put(Arrays.copyOfRange(b, off, off + len));// буфер вызывающего будет переиспользован
+        }
+
+        @Override
+        public void flush() throws IOException {
+            CountDownLatch flushed = new CountDownLatch(1);
+            put(flushed);
+            try {
+                flushed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            if (failure != null) throw failure;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            put(CLOSE);
+            closed = true;
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            if (failure != null) throw failure;
+        }
+    }
+}
@@ -0,0 +1,703 @@
+package com.example.dungeon.core;
+
+import com.example.dungeon.model.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32;
+
+// Мир-сетка width x height на диске, разбитый на квадратные регионы regionSize x regionSize.
+// Регион читается при первом обращении к любой его комнате (обычно — когда move пересекает границу),
+// соседние регионы в этот момент подгружаются в фоне. Загруженные регионы живут в LRU; когда их оценочный
+// размер превышает бюджет, самые давние выгружаются, а изменённые (взятые предметы, убитые монстры,
+// открытые двери) записываются обратно в файл.
+// Выгружает поток подкачки, пока поток сессии работает с комнатами, поэтому каждое изменение комнаты
+// (и построение её описания) идёт в закреплённом регионе (pin): закреплённый регион не выгружается и не
+// пишется, а освобождение под блокировкой делает изменения видимыми для записи при выгрузке.
+//
+// Файл:
+//   int MAGIC, short VERSION, int width, int height, int regionSize,
+//   каталог регионов: long offset, int length, int capacity — на каждый регион,
+//   данные регионов: int rooms, room[rooms] (построчно внутри прямоугольника региона):
+//     str name, str description, byte flags (бит 0 — заперта, биты 4..7 — выходы north/south/east/west),
+//     int n, item[n], byte monster, [str name, int level, int hp, item loot]
+//   Строки и предметы кодируются как в BinarySave. Регион, выросший при записи, переезжает в конец файла.
+public final class RegionStore implements Closeable {
+    static final int MAGIC = 0x44474E52;// "DGNR"
+    static final short VERSION = 1;
+    private static final int HEADER = 4 + 2 + 4 + 4 + 4;
+    private static final int DIR_ENTRY = 8 + 4 + 4;
+
+    private final FileChannel ch;
+    private final int width, height, regionSize, regionsX, regionsY;
+    private final long[] offsets;
+    private final int[] lengths, capacities;
+    private long fileEnd;
+
+    private final LinkedHashMap<Integer, Region> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, CompletableFuture<Region>> loading = new HashMap<>();
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "region-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+    private final long budgetBytes;
+    private long residentBytes;
+    private int lastDemand = -1;// регион, где последний раз был игрок: не выгружается даже при малом бюджете
+    private long loads, prefetches, evictions, writeBacks;
+
+    private RegionStore(FileChannel ch, long budgetBytes) throws IOException {
+        this.ch = ch;
+        this.budgetBytes = budgetBytes;
+        ByteBuffer h = ByteBuffer.allocate(HEADER);
+        ch.read(h, 0);
+        h.flip();
+        if (h.remaining() < HEADER || h.getInt() != MAGIC) throw new IOException("Файл не является миром DungeonMini");
+        short version = h.getShort();
+        if (version != VERSION) throw new IOException("Неподдерживаемая версия мира: " + version);
+        width = h.getInt();
+        height = h.getInt();
+        regionSize = h.getInt();
+        regionsX = (width + regionSize - 1) / regionSize;
+        regionsY = (height + regionSize - 1) / regionSize;
+        int regions = regionsX * regionsY;
+        offsets = new long[regions];
+        lengths = new int[regions];
+        capacities = new int[regions];
+        ByteBuffer dir = ByteBuffer.allocate(regions * DIR_ENTRY);
+        while (dir.hasRemaining() && ch.read(dir, HEADER + dir.position()) > 0) {
+            // читаем каталог целиком
+        }
+        dir.flip();
+        for (int i = 0; i < regions; i++) {
+            offsets[i] = dir.getLong();
+            lengths[i] = dir.getInt();
+            capacities[i] = dir.getInt();
+        }
+        fileEnd = ch.size();
+    }
+
+    // Открывает мир; budgetBytes — сколько (примерно) памяти могут занимать загруженные регионы
+    public static RegionStore open(Path file, long budgetBytes) throws IOException {
+        return new RegionStore(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE), budgetBytes);
+    }
+
+    // Записывает мир-сетку из CompactWorld: комната (x, y) должна иметь id = y * width + x,
+    // а выходы вести только в соседние клетки
+    public static void write(Path file, CompactWorld world, int width, int regionSize) throws IOException {
+        int height = world.size() / width;
+        if (height * width != world.size()) throw new IllegalArgumentException("Число комнат не кратно ширине сетки");
+        write(file, width, height, regionSize, (x0, y0, rw, rh) -> encode(world, width, height, x0, y0, rw, rh));
+    }
+
+    // Синтетический мир-сетка side x side с теми же комнатами, что CompactWorld.grid (--make-world). Регионы
+    // строятся и пишутся по одному: в памяти только каталог и текущий регион, поэтому мир может быть больше кучи
+    public static void writeGrid(Path file, int side, int regionSize) throws IOException {
+        Monster rat = new Monster("Крыса", 1, 4, null);// putRoom только читает монстра
+        write(file, side, side, regionSize, (x0, y0, rw, rh) -> {
+            BinarySave.Out out = new BinarySave.Out(rw * rh * 64);
+            out.putInt(rw * rh);
+            for (int y = y0; y < y0 + rh; y++) {
+                for (int x = x0; x < x0 + rw; x++) {
+                    int id = y * side + x;
+                    int mask = 0;
+                    for (int d = 0; d < 4; d++) if (neighbor(id, d, side, side) >= 0) mask |= 1 << (4 + d);
+                    putRoom(out, "Коридор", "Сырые каменные стены.", mask,
+                            id % 7 == 3 ? List.of(ItemCatalog.SMALL_POTION) : List.of(), id % 11 == 5 ? rat : null);
+                }
+            }
+            return out.buf.flip();
+        });
+    }
+
+    // Содержимое региона с углом (x0, y0) и размером rw x rh в формате файла
+    private interface RegionEncoder {
+        ByteBuffer encode(int x0, int y0, int rw, int rh) throws IOException;
+    }
+
+    private static void write(Path file, int width, int height, int regionSize, RegionEncoder encoder)
+            throws IOException {
+        if (width <= 0 || height <= 0 || regionSize <= 0) {
+            throw new IllegalArgumentException("Размеры мира и региона должны быть больше нуля");
+        }
+        int regionsX = (width + regionSize - 1) / regionSize;
+        int regionsY = (height + regionSize - 1) / regionSize;
+        int regions = regionsX * regionsY;
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer dir = ByteBuffer.allocate(HEADER + regions * DIR_ENTRY);
+            dir.putInt(MAGIC).putShort(VERSION).putInt(width).putInt(height).putInt(regionSize);
+            long pos = dir.capacity();
+            for (int ry = 0; ry < regionsY; ry++) {
+                for (int rx = 0; rx < regionsX; rx++) {
+                    int x0 = rx * regionSize, y0 = ry * regionSize;
+                    int rw = Math.min(regionSize, width - x0), rh = Math.min(regionSize, height - y0);
+                    ByteBuffer blob = encoder.encode(x0, y0, rw, rh);
+                    int len = blob.remaining();
+                    while (blob.hasRemaining()) pos += out.write(blob, pos);
+                    dir.putLong(pos - len).putInt(len).putInt(len);
+                }
+            }
+            dir.flip();
+            while (dir.hasRemaining()) out.write(dir, dir.position());
+            out.force(false);
+        }
+    }
+
+    private static ByteBuffer encode(CompactWorld w, int width, int height, int x0, int y0, int rw, int rh)
+            throws IOException {
+        BinarySave.Out out = new BinarySave.Out(rw * rh * 64);
+        out.putInt(rw * rh);
+        for (int y = y0; y < y0 + rh; y++) {
+            for (int x = x0; x < x0 + rw; x++) {
+                int id = y * width + x;
+                int mask = 0;
+                for (int d = 0; d < 4; d++) {
+                    int to = w.exit(id, d);
+                    if (to < 0) continue;
+                    if (to != neighbor(id, d, width, height)) {
+                        throw new IllegalArgumentException("Выход из комнаты " + id + " ведёт не в соседнюю клетку");
+                    }
+                    mask |= 1 << (4 + d);
+                }
+                putRoom(out, w.name(id), w.description(id), (w.isLocked(id) ? 1 : 0) | mask, w.items(id), w.monster(id));
+            }
+        }
+        return out.buf.flip();
+    }
+
+    private static void putRoom(BinarySave.Out out, String name, String desc, int flags, List<Item> items, Monster m)
+            throws IOException {
+        out.putString(name);
+        out.putString(desc);
+        out.putByte((byte) flags);
+        BinarySave.putItems(out, items);
+        out.putByte((byte) (m == null ? 0 : 1));
+        if (m != null) {
+            out.putString(m.getName());
+            out.putInt(m.getLevel());
+            out.putInt(m.getHp());
+            BinarySave.putItem(out, m.getLoot());
+        }
+    }
+
+    // id соседней клетки в направлении dir (CompactWorld.NORTH...) или -1 у края карты
+    private static int neighbor(int id, int dir, int width, int height) {
+        int x = id % width, y = id / width;
+        return switch (dir) {
+            case CompactWorld.NORTH -> y > 0 ? id - width : -1;
+            case CompactWorld.SOUTH -> y < height - 1 ? id + width : -1;
+            case CompactWorld.EAST -> x < width - 1 ? id + 1 : -1;
+            case CompactWorld.WEST -> x > 0 ? id - 1 : -1;
+            default -> -1;
+        };
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int rooms() {
+        return width * height;
+    }
+
+    // Комната-представление; данные читаются из региона при каждом обращении, так что представление
+    // остаётся верным и после выгрузки региона
+    public Room room(int id) {
+        if (id < 0 || id >= width * height) throw new IndexOutOfBoundsException(id);
+        return new PagedRoom(id);
+    }
+
+    public Room room(int x, int y) {
+        return room(y * width + x);
+    }
+
+    // Весь мир одним CompactWorld в памяти (образ мира для быстрого старта, --make-image). Регионы читаются
+    // по порядку и выгружаются по бюджету как обычно; предметы и монстры копируются, файл мира не меняется
+    public CompactWorld toCompact() {
+        int n = rooms();
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIds = new HashMap<>();
+        int[] nameIds = new int[n], descIds = new int[n], exits = new int[n * 4];
+        long[] locked = new long[(n + 63) >>> 6];
+        List<ItemContainer> items = new ArrayList<>();
+        List<Integer> itemRooms = new ArrayList<>();
+        Monster[] monsters = new Monster[n];
+        for (int id = 0; id < n; id++) {
+            PagedRoom r = new PagedRoom(id);
+            Region region = r.region();
+            int slot = r.slot();
+            nameIds[id] = stringIds.computeIfAbsent(region.names[slot], s -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+            descIds[id] = stringIds.computeIfAbsent(region.descs[slot], s -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+            int flags = region.flags[slot];
+            if ((flags & 1) != 0) locked[id >>> 6] |= 1L << id;
+            for (int d = 0; d < 4; d++) {
+                exits[id * 4 + d] = (flags & (1 << (4 + d))) != 0 ? neighbor(id, d, width, height) : -1;
+            }
+            if (region.items[slot] != null && !region.items[slot].isEmpty()) {
+                items.add(new ItemContainer(region.items[slot]));
+                itemRooms.add(id);
+            }
+            Monster m = region.monsters[slot];
+            if (m != null) {
+                monsters[id] = new Monster(m.getName(), m.getLevel(), m.getMaxHp(), m.getLoot());
+                monsters[id].setHp(m.getHp());
+            }
+        }
+        CompactWorld w = CompactWorld.of(width, strings, nameIds, descIds, exits, locked);
+        for (int i = 0; i < items.size(); i++) items.get(i).forEachStack(w.items(itemRooms.get(i))::add);
+        for (int id = 0; id < n; id++) if (monsters[id] != null) w.setMonster(id, monsters[id]);
+        return w;
+    }
+
+    private int regionOf(int id) {
+        return (id / width / regionSize) * regionsX + (id % width) / regionSize;
+    }
+
+    private Region region(int rid) {
+        return region(rid, true);
+    }
+
+    private Region region(int rid, boolean prefetchNeighbors) {
+        CompletableFuture<Region> f;
+        boolean mine = false;
+        synchronized (this) {
+            if (prefetchNeighbors) lastDemand = rid;
+            Region r = resident.get(rid);
+            if (r != null) return r;
+            f = loading.get(rid);
+            if (f == null) {
+                f = new CompletableFuture<>();
+                loading.put(rid, f);
+                mine = true;
+            }
+        }
+        if (mine) {
+            try {
+                Region r = read(rid);
+                synchronized (this) {
+                    resident.put(rid, r);
+                    residentBytes += r.bytes;
+                    loading.remove(rid);
+                    if (prefetchNeighbors) loads++;
+                    else prefetches++;
+                    evictOverBudget(rid);
+                }
+                f.complete(r);
+            } catch (IOException e) {
+                synchronized (this) {
+                    loading.remove(rid);
+                }
+                f.completeExceptionally(e);
+                throw new UncheckedIOException("Не удалось прочитать регион " + rid, e);
+            }
+            if (prefetchNeighbors) prefetchAround(rid);
+        }
+        return f.join();
+    }
+
+    private void prefetchAround(int rid) {
+        int rx = rid % regionsX, ry = rid / regionsX;
+        int[][] around = {{rx, ry - 1}, {rx, ry + 1}, {rx + 1, ry}, {rx - 1, ry}};
+        for (int[] p : around) {
+            if (p[0] < 0 || p[1] < 0 || p[0] >= regionsX || p[1] >= regionsY) continue;
+            int n = p[1] * regionsX + p[0];
+            synchronized (this) {
+                if (resident.containsKey(n) || loading.containsKey(n)) continue;
+            }
+            prefetcher.execute(() -> {
+                try {
+                    region(n, false);
+                } catch (UncheckedIOException e) {
+                    System.err.println(e.getMessage());
+                }
+            });
+        }
+    }
+
+    // Регион rid, загруженный и закреплённый до unpin; закрепления считаются, их можно вкладывать
+    private Region pin(int rid) {
+        while (true) {
+            Region r = region(rid);
+            synchronized (this) {
+                if (resident.get(rid) == r) {// не выгружен, пока мы его получали
+                    r.pins++;
+                    return r;
+                }
+            }
+        }
+    }
+
+    private synchronized void unpin(Region r) {
+        r.pins--;
+    }
+
+    // Выгрузка давних регионов, кроме только что загруженного и закреплённых; вызывается под блокировкой
+    private void evictOverBudget(int keep) {
+        Iterator<Map.Entry<Integer, Region>> it = resident.entrySet().iterator();
+        while (residentBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<Integer, Region> e = it.next();
+            if (e.getKey() == keep || e.getKey() == lastDemand) continue;
+            Region r = e.getValue();
+            if (r.pins > 0) continue;
+            try {
+                writeBack(r);
+            } catch (IOException ex) {
+                System.err.println("Не удалось записать регион " + r.id + ": " + ex.getMessage());
+                continue;// оставляем в памяти, чтобы не потерять изменения
+            }
+            it.remove();
+            residentBytes -= r.bytes;
+            evictions++;
+        }
+    }
+
+    private Region read(int rid) throws IOException {
+        ByteBuffer blob = ByteBuffer.allocate(lengths[rid]);
+        long pos = offsets[rid];
+        while (blob.hasRemaining()) {
+            if (ch.read(blob, pos + blob.position()) < 0) throw new IOException("Файл мира обрезан");
+        }
+        blob.flip();
+        Region r = new Region(rid, crc(blob));
+        int n = blob.getInt();
+        r.names = new String[n];
+        r.descs = new String[n];
+        r.flags = new byte[n];
+        r.items = new ItemContainer[n];
+        r.monsters = new Monster[n];
+        long bytes = 64L + n * 40L;
+        for (int i = 0; i < n; i++) {
+            r.names[i] = BinarySave.getString(blob);
+            r.descs[i] = BinarySave.getString(blob);
+            r.flags[i] = blob.get();
+            List<Item> items = BinarySave.getItems(blob);
+            r.items[i] = items.isEmpty() ? null : new ItemContainer(items);
+            if (blob.get() == 1) {
+                String name = BinarySave.getString(blob);
+                int level = blob.getInt();
+                int hp = blob.getInt();
+                r.monsters[i] = new Monster(name, level, hp, BinarySave.getItem(blob));
+                bytes += 64;
+            }
+            bytes += 2L * (r.names[i].length() + r.descs[i].length()) + 80 + (items.size() * 48L);
+        }
+        r.bytes = bytes;
+        return r;
+    }
+
+    // Пишет регион обратно, только если его содержимое отличается от прочитанного
+    private void writeBack(Region r) throws IOException {
+        BinarySave.Out out = new BinarySave.Out((int) Math.min(Integer.MAX_VALUE, r.bytes));
+        out.putInt(r.names.length);
+        for (int i = 0; i < r.names.length; i++) {
+            putRoom(out, r.names[i], r.descs[i], r.flags[i], r.items[i] == null ? List.of() : r.items[i], r.monsters[i]);
+        }
+        ByteBuffer blob = out.buf.flip();
+        if (crc(blob) == r.crc && blob.remaining() == lengths[r.id]) return;
+        int len = blob.remaining();
+        long pos = offsets[r.id];
+        if (len > capacities[r.id]) {// не помещается на старом месте — переезжаем в конец файла
+            pos = fileEnd;
+            fileEnd += len;
+            capacities[r.id] = len;
+        }
+        while (blob.hasRemaining()) ch.write(blob, pos + blob.position());
+        offsets[r.id] = pos;
+        lengths[r.id] = len;
+        ByteBuffer entry = ByteBuffer.allocate(DIR_ENTRY).putLong(pos).putInt(len).putInt(capacities[r.id]).flip();
+        ch.write(entry, HEADER + (long) r.id * DIR_ENTRY);
+        r.crc = crc(blob.rewind());
+        writeBacks++;
+    }
+
+    private static long crc(ByteBuffer b) {
+        CRC32 c = new CRC32();
+        c.update(b.duplicate());
+        return c.getValue();
+    }
+
+    // Хранилище, которому принадлежит комната; null — комната не из страничного мира
+    static RegionStore of(Room r) {
+        return r instanceof PagedRoom p ? p.store() : null;
+    }
+
+    // id комнаты этого хранилища (см. room(int))
+    int idOf(Room r) {
+        if (!(r instanceof PagedRoom p) || p.store() != this) throw new IllegalArgumentException("Комната не из этого мира");
+        return p.id;
+    }
+
+    // Записывает в файл все изменённые загруженные регионы (save в мире --world); регионы остаются в памяти
+    synchronized void flush() throws IOException {
+        for (Region r : resident.values()) writeBack(r);
+        ch.force(false);
+    }
+
+    public synchronized String stats() {
+        return "регионов в памяти: " + resident.size() + " (~" + residentBytes / 1024 + " КБ из " + budgetBytes / 1024
+                + " КБ), загружено по запросу: " + loads + ", заранее: " + prefetches
+                + ", выгружено: " + evictions + ", записано обратно: " + writeBacks;
+    }
+
+    // Записывает все изменённые регионы и закрывает файл
+    @Override
+    public void close() throws IOException {
+        prefetcher.shutdownNow();
+        synchronized (this) {
+            for (Region r : resident.values()) writeBack(r);
+            resident.clear();
+            ch.force(false);
+        }
+        ch.close();
+    }
+
+    private static final class Region {
+        final int id;
+        int pins;// под блокировкой RegionStore
+        long crc;
+        long bytes;
+        String[] names;
+        String[] descs;
+        byte[] flags;
+        ItemContainer[] items;
+        Monster[] monsters;
+        String[] rendered;// кэш Room.describe() по слотам; сбрасывается мутаторами PagedRoom
+
+        Region(int id, long crc) {
+            this.id = id;
+            this.crc = crc;
+        }
+    }
+
+    // Комната страничного мира. Хранит только id; равенство — по id, а не по ссылке.
+    // Чтения идут без закрепления: выгрузка регион только читает, а меняет его лишь поток сессии
+    private final class PagedRoom extends Room {
+        private final int id;
+
+        PagedRoom(int id) {
+            this.id = id;
+        }
+
+        private Region region() {
+            return RegionStore.this.region(regionOf(id));
+        }
+
+        private Region pin() {
+            return RegionStore.this.pin(regionOf(id));
+        }
+
+        private int slot() {
+            int x = id % width, y = id / width;
+            int rw = Math.min(regionSize, width - (x / regionSize) * regionSize);
+            return (y % regionSize) * rw + x % regionSize;
+        }
+
+        @Override
+        public String getName() {
+            return region().names[slot()];
+        }
+
+        @Override
+        public String getDescription() {
+            return region().descs[slot()];
+        }
+
+        @Override
+        public boolean isPaged() {
+            return true;
+        }
+
+        @Override
+        public boolean hasPosition() {
+            return true;
+        }
+
+        @Override
+        public int getX() {
+            return id % width;
+        }
+
+        @Override
+        public int getY() {
+            return id / width;
+        }
+
+        @Override
+        public Map<String, Room> getNeighbors() {
+            int mask = (region().flags[slot()] >> 4) & 0xF;
+            Map<String, Room> exits = new LinkedHashMap<>(8);
+            for (int d = 0; d < 4; d++) {
+                if ((mask & (1 << d)) != 0) exits.put(CompactWorld.DIRS[d], new PagedRoom(neighbor(id, d, width, height)));
+            }
+            return Collections.unmodifiableMap(exits);// топология страничного мира неизменна
+        }
+
+        @Override
+        public void setNeighbor(String dir, Room room) {
+            throw new UnsupportedOperationException("Топология страничного мира неизменна");
+        }
+
+        @Override
+        public void removeNeighbor(String dir) {
+            throw new UnsupportedOperationException("Топология страничного мира неизменна");
+        }
+
+        @Override
+        public List<Item> getItems() {
+            return Collections.unmodifiableList(items());
+        }
+
+        @Override
+        public void addItem(Item item, int count) {
+            Region r = pin();
+            try {
+                items().add(item, count);
+                invalidate();
+            } finally {
+                unpin(r);
+            }
+        }
+
+        @Override
+        public boolean removeItem(Item item) {
+            Region r = pin();
+            try {
+                if (!items().remove(item)) return false;
+                invalidate();
+                return true;
+            } finally {
+                unpin(r);
+            }
+        }
+
+        @Override
+        public void forEachItemStack(ObjIntConsumer<Item> action) {
+            items().forEachStack(action);
+        }
+
+        @Override
+        public Item findItem(CharSequence name) {
+            return items().find(name);
+        }
+
+        // Представления PagedRoom создаются на каждый шаг, поэтому описание кэшируется в регионе, а не в объекте
+        @Override
+        public String describe() {
+            Region r = pin();
+            try {
+                int s = slot();
+                if (r.rendered == null) r.rendered = new String[r.names.length];
+                String text = r.rendered[s];
+                if (text == null) r.rendered[s] = text = render();
+                return text;
+            } finally {
+                unpin(r);
+            }
+        }
+
+        // Вызывается из мутаторов, которые уже закрепили регион
+        @Override
+        protected void invalidate() {
+            Region r = region();
+            if (r.rendered != null) r.rendered[slot()] = null;
+        }
+
+        private ItemContainer.Slot items() {
+            return new ItemContainer.Slot() {
+                @Override
+                protected ItemContainer container() {
+                    return region().items[slot()];
+                }
+
+                @Override
+                protected ItemContainer createContainer() {
+                    return region().items[slot()] = new ItemContainer();
+                }
+
+                @Override
+                protected void releaseContainer() {
+                    region().items[slot()] = null;
+                }
+            };
+        }
+
+        @Override
+        public Monster getMonster() {
+            return region().monsters[slot()];
+        }
+
+        @Override
+        public void setMonster(Monster m) {
+            Region r = pin();
+            try {
+                r.monsters[slot()] = m;
+                invalidate();
+            } finally {
+                unpin(r);
+            }
+        }
+
+        // Удар меняет HP монстра региона: регион не должен выгрузиться посреди удара
+        @Override
+        public int strikeMonster(Monster m, int damage) {
+            Region r = pin();
+            try {
+                return super.strikeMonster(m, damage);
+            } finally {
+                unpin(r);
+            }
+        }
+
+        @Override
+        public int getLocked() {
+            return region().flags[slot()] & 1;
+        }
+
+        @Override
+        public void setLocked(int locked) {
+            Region r = pin();
+            try {
+                int s = slot();
+                r.flags[s] = (byte) ((r.flags[s] & ~1) | (locked == 1 ? 1 : 0));
+                invalidate();
+            } finally {
+                unpin(r);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PagedRoom p && p.id == id && p.store() == RegionStore.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        private RegionStore store() {
+            return RegionStore.this;
+        }
+    }
+}
@@ -4,37 +4,102 @@ import com.example.dungeon.model.*;
 
 import java.io.*;
 import java.nio.file.*;
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class SaveLoad {
-    private static final Path SAVE = Paths.get("save.txt");
-    private static final Path SCORES = Paths.get("scores.csv");
+    // Файлы лежат в текущем каталоге, пока useDirectory не укажет другой.
+    // Сохранение у каждого игрока своё — save-<имя>.bin (см. saveFile): сессии сервера не читают чужих
+    private static Path saveDir = Paths.get("");
+    private static Path legacyFile = Paths.get("save.txt");// старый текстовый формат, только чтение
+    private static Path scoresFile = Paths.get("scores.csv");
+    private static Path indexFile = Paths.get("scores.idx");// индекс таблицы лидеров (см. Leaderboard)
+    private static Leaderboard leaderboard;
+    private static ScoreWriter scores;// заводится при первом save
+    private static long scoresFlushMillis = 20;
+    private static boolean scoresFsync;
 
-    public static void save(GameState s) {
-        try (BufferedWriter w = Files.newBufferedWriter(SAVE)) {
-            Player p = s.getPlayer();
-            w.write("player;" + p.getName() + ";" + p.getHp() + ";" + p.getAttack());
-            w.newLine();
-            String inv = p.getInventory().stream().map(i -> i.getClass().getSimpleName() + ":" + i.getName()).collect(Collectors.joining(","));
-            w.write("inventory;" + inv);
-            w.newLine();
-            w.write("room;" + s.getCurrent().getName());
-            w.newLine();
-            System.out.println("Сохранено в " + SAVE.toAbsolutePath());
-            writeScore(p.getName(), s.getScore());
+    // Как пишутся очки: группа строк раз в flushMillis мс, fsync — сбрасывать ли каждую группу на диск
+    public static synchronized void configureScores(long flushMillis, boolean fsync) {
+        scoresFlushMillis = flushMillis;
+        scoresFsync = fsync;
+    }
+
+    // Переносит сохранения и scores.csv в каталог dir (например, временный для ботов). Только до первого save или scores:
+    // открытые писатель очков и индекс остались бы на старых файлах
+    public static synchronized void useDirectory(Path dir) {
+        if (scores != null || leaderboard != null) throw new IllegalStateException("Файлы очков уже открыты");
+        saveDir = dir;
+        legacyFile = dir.resolve("save.txt");
+        scoresFile = dir.resolve("scores.csv");
+        indexFile = dir.resolve("scores.idx");
+    }
+
+    // Файл сохранения игрока; имя приводится к безопасному так же, как у автосохранения
+    static synchronized Path saveFile(String player) {
+        return saveDir.resolve("save-" + Autosave.fileName(player));
+    }
+
+    // Сохраняет весь мир в двоичном формате (см. BinarySave).
+    // synchronized: в режиме сервера несколько сессий пишут в одни и те же файлы
+    public static synchronized void save(GameState s) {
+        GameEvents.SaveLoadCall event = GameEvents.saveLoadStarted();
+        Path saveFile = saveFile(s.getPlayer().getName());
+        long bytes = 0;
+        try {
+            bytes = BinarySave.write(s, saveFile);
+            s.getOut().println("Сохранено в " + saveFile.toAbsolutePath() + " (" + bytes + " байт)");
+            writeScore(s.getPlayer().getName(), s.getScore());
         } catch (IOException e) {
             throw new UncheckedIOException("Не удалось сохранить игру", e);
+        } finally {
+            commit(event, "save", saveFile, bytes);
         }
     }
 
-    public static void load(GameState s) {
-        if (!Files.exists(SAVE)) {
-            System.out.println("Сохранение не найдено.");
-            return;
+    public static synchronized void load(GameState s) {
+        GameEvents.SaveLoadCall event = GameEvents.saveLoadStarted();
+        Path saveFile = saveFile(s.getPlayer().getName()), file = saveFile;
+        try {
+            if (Files.exists(saveFile)) {
+                try {
+                    BinarySave.read(s, saveFile);
+                    s.getOut().println("Игра загружена.");
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Не удалось загрузить игру: " + e.getMessage(), e);
+                }
+            } else if (Files.exists(legacyFile) && loadLegacy(s)) {
+                file = legacyFile;
+            } else {
+                s.getOut().println("Сохранение не найдено.");
+            }
+        } finally {
+            commit(event, "load", file, -1);
         }
-        try (BufferedReader r = Files.newBufferedReader(SAVE)) {
+    }
+
+    // Событие JFR о вызове; bytes < 0 — размер файла (0, если файла нет). Без записи JFR ничего не делает
+    private static void commit(GameEvents.SaveLoadCall event, String operation, Path file, long bytes) {
+        if (event == null) return;
+        event.end();
+        if (!event.shouldCommit()) return;
+        if (bytes < 0) {
+            try {
+                bytes = Files.exists(file) ? Files.size(file) : 0;
+            } catch (IOException e) {
+                bytes = 0;
+            }
+        }
+        event.operation = operation;
+        event.file = file.toString();
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    // Чтение старого save.txt: игрок, инвентарь и комната по имени. Характеристики предметов в файле не сохранялись:
+    // берём их из ItemCatalog по имени, а для незнакомых предметов — прежние значения по умолчанию.
+    // Файл в нём один на всех, поэтому читается только игроком с тем же именем; false — игрок другой
+    private static boolean loadLegacy(GameState s) {
+        try (BufferedReader r = Files.newBufferedReader(legacyFile)) {
             Map<String, String> map = new HashMap<>();
             for (String line; (line = r.readLine()) != null; ) {
                 String[] parts = line.split(";", 2);
@@ -42,6 +107,7 @@ public class SaveLoad {
             }
             Player p = s.getPlayer();
             String[] pp = map.getOrDefault("player", "Hero;10;3").split(";");// убран player;
+            if (!pp[0].equals(p.getName())) return false;
             p.setName(pp[0]);// ошибка нумерации, была с 1, исправлено
             p.setHp(Integer.parseInt(pp[1]));// ошибка нумерации, была с 2, исправлено
             p.setAttack(Integer.parseInt(pp[2]));// ошибка нумерации, была с 3, исправлено
@@ -50,51 +116,96 @@ public class SaveLoad {
             if (!inv.isBlank()) for (String tok : inv.split(",")) {
                 String[] t = tok.split(":", 3);
                 if (t.length < 2) continue;
+                Item known = ItemCatalog.find(t[1]);
+                if (known != null && known.getClass().getSimpleName().equals(t[0])) {
+                    p.getInventory().add(known);
+                    continue;
+                }
                 switch (t[0]) {
-                    case "Potion" -> p.getInventory().add(new Potion(t[1], 5));
-                    case "Key" -> p.getInventory().add(new Key(t[1]));
-                    case "Weapon" -> p.getInventory().add(new Weapon(t[1], 3));
+                    case "Potion" -> p.getInventory().add(ItemCatalog.potion(t[1], 5));
+                    case "Key" -> p.getInventory().add(ItemCatalog.key(t[1]));
+                    case "Weapon" -> p.getInventory().add(ItemCatalog.weapon(t[1], 3));
                     default -> {
                     }
                 }
             }
-            System.out.println("Игра загружена (упрощённо).");
+            String roomName = map.get("room");
+            if (roomName != null) {
+                BinarySave.collectRooms(s.getCurrent()).stream()
+                        .filter(room -> room.getName().equals(roomName))
+                        .findFirst()
+                        .ifPresent(s::setCurrent);
+            }
+            s.getOut().println("Игра загружена из старого формата (упрощённо).");
+            return true;
         } catch (IOException e) {
             throw new UncheckedIOException("Не удалось загрузить игру", e);
         }
     }
 
-    public static void printScores() {
-        if (!Files.exists(SCORES)) {
-            System.out.println("Пока нет результатов.");
-            return;
+    public static void printScores(PrintStream out) {
+        GameEvents.SaveLoadCall event = GameEvents.saveLoadStarted();
+        try {
+            flushScores();
+            if (!Files.exists(scoresFile)) {
+                out.println("Пока нет результатов.");
+                return;
+            }
+            out.println("Таблица лидеров (топ-" + Leaderboard.TOP + "):");
+            leaderboard().top().forEach(s -> out.println(s.player() + " — " + s.score()));
+        } finally {
+            commit(event, "printScores", scoresFile, -1);
         }
-        try (BufferedReader r = Files.newBufferedReader(SCORES)) {
-            System.out.println("Таблица лидеров (топ-10):");
-            r.lines().skip(1).map(l -> l.split(",")).map(a -> new Score(a[1], Integer.parseInt(a[2])))
-                    .sorted(Comparator.comparingInt(Score::score).reversed()).limit(10)
-                    .forEach(s -> System.out.println(s.player() + " — " + s.score()));
-        } catch (IOException e) {
-            System.err.println("Ошибка чтения результатов: " + e.getMessage());
+    }
+
+    // Лучший результат игрока и его место среди всех игроков
+    public static void printPlayerScore(PrintStream out, String player) {
+        flushScores();
+        Leaderboard board = leaderboard();
+        int best = board.best(player);
+        if (best < 0) {
+            out.println("У игрока " + player + " пока нет результатов.");
+            return;
         }
+        out.println(player + ": лучший результат " + best + ", место " + board.rank(player) + " из " + board.players());
     }
 
+    private static synchronized Leaderboard leaderboard() {
+        if (leaderboard == null) leaderboard = new Leaderboard(scoresFile, indexFile);
+        return leaderboard;
+    }
+
+    // Строка очков уходит в очередь ScoreWriter; в файл её допишет поток-писатель вместе с чужими строками
     private static void writeScore(String player, int score) {
         try {
-            boolean header = !Files.exists(SCORES);
-            try (BufferedWriter w = Files.newBufferedWriter(SCORES, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
-                if (header) {
-                    w.write("ts,player,score");
-                    w.newLine();
-                }
-                w.write(LocalDateTime.now() + "," + player + "," + score);
-                w.newLine();
-            }
+            scores().append(player, score);
         } catch (IOException e) {
             System.err.println("Не удалось записать очки: " + e.getMessage());
         }
     }
 
-    private record Score(String player, int score) {
+    private static synchronized ScoreWriter scores() throws IOException {
+        if (scores == null) {
+            ScoreWriter w = new ScoreWriter(scoresFile, scoresFlushMillis, scoresFsync);
+            // строки, ещё не записанные к выходу из игры, дописываются при завершении JVM
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    w.close();
+                } catch (IOException e) {
+                    System.err.println("Не удалось записать очки: " + e.getMessage());
+                }
+            }, "scores-close"));
+            scores = w;
+        }
+        return scores;
+    }
+
+    // Таблицу лидеров читают после того, как допишутся строки из очереди (свой только что сохранённый результат)
+    private static void flushScores() {
+        ScoreWriter w;
+        synchronized (SaveLoad.class) {
+            w = scores;
+        }
+        if (w != null) w.flush();
     }
 }
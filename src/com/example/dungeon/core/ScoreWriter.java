@@ -0,0 +1,154 @@
+package com.example.dungeon.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+// Дописывание строк "ts,player,score" в scores.csv группами. Сессии только кладут строку в очередь без блокировок
+// (стек Трайбера: один compareAndSet), а единственный поток-писатель забирает всю очередь одним getAndSet
+// и пишет её одним вызовом write в файл, открытый один раз. Первая строка после простоя будит писателя,
+// он ждёт flushMillis, чтобы собрать группу, и пишет. При fsync каждая группа перед следующей
+// сбрасывается на диск (force) — одна синхронизация на группу, а не на строку.
+// Время строки — миллисекунды, которые сессия берёт при добавлении; в текст ISO (как LocalDateTime.toString,
+// но всегда с миллисекундами) их превращает писатель, а дата и время до секунд пересчитываются раз в секунду.
+public final class ScoreWriter implements Closeable {
+    private static final class Row {
+        final String player;
+        final int score;
+        final long millis;
+        Row next;
+
+        Row(String player, int score, long millis) {
+            this.player = player;
+            this.score = score;
+            this.millis = millis;
+        }
+    }
+
+    private final AtomicReference<Row> pending = new AtomicReference<>();// новые строки, последняя — в голове
+    private final FileChannel file;
+    private final long flushNanos;
+    private final boolean fsync;
+    private final Thread writer;
+    private final LongConsumer written;// задержка каждой строки от append до записи, мс; может быть null
+    private final StringBuilder text = new StringBuilder(256);
+    private final ZoneId zone = ZoneId.systemDefault();
+    private long second = Long.MIN_VALUE;// секунда, для которой посчитан prefix
+    private String prefix;// "2024-05-01T12:30:45"
+    private volatile boolean closed;
+    private long rows;
+
+    public ScoreWriter(Path csv, long flushMillis, boolean fsync) throws IOException {
+        this(csv, flushMillis, fsync, null);
+    }
+
+    // written получает в потоке записи для каждой строки миллисекунды от append до записи в файл (при fsync — до force)
+    public ScoreWriter(Path csv, long flushMillis, boolean fsync, LongConsumer written) throws IOException {
+        this.written = written;
+        this.file = FileChannel.open(csv, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.fsync = fsync;
+        if (file.size() == 0) file.write(ByteBuffer.wrap("ts,player,score\n".getBytes(StandardCharsets.UTF_8)));
+        this.writer = Thread.ofPlatform().name("scores").daemon().start(this::loop);
+    }
+
+    // Из любого потока; строка окажется в файле не позже чем через flushMillis
+    public void append(String player, int score) {
+        Row row = new Row(player, score, System.currentTimeMillis());
+        Row head;
+        do {
+            head = pending.get();
+            row.next = head;
+        } while (!pending.compareAndSet(head, row));
+        if (head == null) LockSupport.unpark(writer);
+    }
+
+    // Сразу пишет всё, что добавлено до вызова (перед чтением таблицы лидеров и при выходе)
+    public void flush() {
+        try {
+            writePending();
+        } catch (IOException e) {
+            System.err.println("Не удалось записать очки: " + e.getMessage());
+        }
+    }
+
+    // Сколько строк записано в файл
+    public synchronized long rows() {
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writePending();
+        file.close();
+    }
+
+    private void loop() {
+        while (!closed) {
+            if (pending.get() == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            if (flushNanos > 0) LockSupport.parkNanos(this, flushNanos);// собираем группу
+            flush();
+        }
+    }
+
+    // Группа пишется под монитором: flush из потока сессии и писатель не пересекаются, порядок групп сохраняется
+    private synchronized void writePending() throws IOException {
+        Row batch = pending.getAndSet(null);
+        if (batch == null) return;
+        Row ordered = null;// в стеке строки в обратном порядке
+        while (batch != null) {
+            Row next = batch.next;
+            batch.next = ordered;
+            ordered = batch;
+            batch = next;
+        }
+        text.setLength(0);
+        int n = 0;
+        for (Row r = ordered; r != null; r = r.next, n++) {
+            timestamp(r.millis);
+            text.append(',').append(r.player).append(',').append(r.score).append('\n');
+        }
+        ByteBuffer buf = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+        while (buf.hasRemaining()) file.write(buf);
+        if (fsync) file.force(false);
+        rows += n;
+        if (written != null) {
+            long now = System.currentTimeMillis();
+            for (Row r = ordered; r != null; r = r.next) written.accept(now - r.millis);
+        }
+    }
+
+    private void timestamp(long millis) {
+        long sec = Math.floorDiv(millis, 1000);
+        if (sec != second) {
+            second = sec;
+            prefix = LocalDateTime.ofInstant(Instant.ofEpochSecond(sec), zone).toString();
+            if (prefix.length() == 16) prefix += ":00";// toString опускает нулевые секунды
+        }
+        int ms = Math.floorMod(millis, 1000);
+        text.append(prefix).append('.').append((char) ('0' + ms / 100)).append((char) ('0' + ms / 10 % 10))
+                .append((char) ('0' + ms % 10));
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.dungeon.core;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Часы мира: один фоновый поток на всю игру только увеличивает счётчик тиков. Сами события мира
+// выполняет поток команд каждой сессии: перед очередной командой он забирает накопившиеся тики (play),
+// поэтому таймерам и комнатам не нужны блокировки, а журнал видит тики как обычную команду tick.
+final class WorldClock implements AutoCloseable {
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "world-clock");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile long ticks;
+
+    WorldClock(long tickMillis) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("Длина тика должна быть больше нуля: " + tickMillis);
+        timer.scheduleAtFixedRate(() -> ticks++, tickMillis, tickMillis, TimeUnit.MILLISECONDS);// пишет только этот поток
+    }
+
+    long now() {
+        return ticks;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
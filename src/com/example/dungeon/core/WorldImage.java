@@ -0,0 +1,185 @@
+package com.example.dungeon.core;
+
+import com.example.dungeon.model.*;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Готовый образ большого мира (--generate, --world) для быстрого старта: массивы CompactWorld целиком.
+// При запуске образ читается с диска одним чтением в буфер вне кучи (десятки мегабайт не копирует сборщик
+// мусора) и разворачивается в мир один раз; дальше с миром обращаются как с --generate: игрок начинает
+// в комнате 0, несколько сессий — только через --shared-world или --common-world. Ни генерации, ни чтения
+// регионов при старте. Встроенный мир из пяти комнат быстрее построить заново, чем раскодировать, — у него образа нет.
+// Формат (big-endian):
+//   int MAGIC, short VERSION, int gridWidth (0 — не сетка), int rooms,
+//   int n, str[n] — таблица строк; int nameId[rooms], int descId[rooms], int exit[rooms * 4],
+//   long locked[(rooms + 63) / 64], int n, item[n] — таблица описаний предметов, int n, str[n] — имена монстров,
+//   int stacks, int room[stacks], int def[stacks], int count[stacks],
+//   int monsters, int room[monsters], int name[monsters], int level[monsters], int hp[monsters],
+//   int maxHp[monsters], int loot[monsters] (-1 — нет). Строки и предметы — как в BinarySave.
+// Всё, что есть у каждой комнаты, предмета и монстра, лежит столбцами int, которые читаются целиком (IntBuffer.get)
+public final class WorldImage {
+    static final int MAGIC = 0x44474E49;// "DGNI"
+    static final short VERSION = 1;
+
+    private WorldImage() {
+    }
+
+    public static CompactWorld load(Path file) throws IOException {
+        ByteBuffer in;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("Слишком большой образ мира: " + ch.size() + " байт");
+            in = ByteBuffer.allocateDirect((int) ch.size());
+            while (in.hasRemaining() && ch.read(in) > 0) {
+                // читаем файл целиком
+            }
+        }
+        in.flip();
+        if (in.remaining() < 4 || in.getInt() != MAGIC) throw new IOException("Файл не является образом мира DungeonMini");
+        return decode(in);
+    }
+
+    // Записывает образ мира w; возвращает размер в байтах
+    public static long write(Path file, CompactWorld w) throws IOException {
+        int n = w.size();
+        BinarySave.Out out = new BinarySave.Out(n * 40 + (1 << 16));
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putInt(w.gridWidth());
+        out.putInt(n);
+        List<String> strings = w.strings();
+        out.putInt(strings.size());
+        for (String s : strings) out.putString(s);
+        for (int id = 0; id < n; id++) out.putInt(w.nameId(id));
+        for (int id = 0; id < n; id++) out.putInt(w.descId(id));
+        for (int id = 0; id < n; id++) {
+            for (int d = 0; d < 4; d++) out.putInt(w.exit(id, d));
+        }
+        for (int word = 0; word < (n + 63) >>> 6; word++) {
+            long bits = 0;
+            for (int id = word << 6; id < Math.min(n, (word + 1) << 6); id++) if (w.isLocked(id)) bits |= 1L << id;
+            out.putLong(bits);
+        }
+        // описания предметов и имена монстров — таблицами; комнаты без предметов и монстров не пишутся
+        Map<Item, Integer> defs = new LinkedHashMap<>();
+        Map<String, Integer> names = new LinkedHashMap<>();
+        IntColumns stacks = new IntColumns(3), monsters = new IntColumns(6);
+        for (int id = 0; id < n; id++) {
+            int room = id;
+            w.items(id).forEachStack((item, c) -> stacks.add(room, defId(defs, item), c));
+            Monster m = w.monster(id);
+            if (m != null) {
+                monsters.add(id, names.computeIfAbsent(m.getName(), k -> names.size()), m.getLevel(), m.getHp(),
+                        m.getMaxHp(), m.getLoot() == null ? -1 : defId(defs, m.getLoot()));
+            }
+        }
+        out.putInt(defs.size());
+        for (Item def : defs.keySet()) BinarySave.putItem(out, def);
+        out.putInt(names.size());
+        for (String name : names.keySet()) out.putString(name);
+        stacks.write(out);
+        monsters.write(out);
+        return save(file, out.buf.flip());
+    }
+
+    private static int defId(Map<Item, Integer> defs, Item item) {
+        return defs.computeIfAbsent(ItemCatalog.intern(item), d -> defs.size());
+    }
+
+    // Записи из нескольких int, которые пишутся столбцами: сначала число записей, потом первое поле всех записей...
+    private static final class IntColumns {
+        private final int fields;
+        private int[] values = new int[1024];
+        private int size;// записей
+
+        IntColumns(int fields) {
+            this.fields = fields;
+        }
+
+        void add(int... record) {
+            if ((size + 1) * fields > values.length) values = Arrays.copyOf(values, values.length * 2);
+            System.arraycopy(record, 0, values, size * fields, fields);
+            size++;
+        }
+
+        void write(BinarySave.Out out) {
+            out.putInt(size);
+            for (int f = 0; f < fields; f++) {
+                for (int i = 0; i < size; i++) out.putInt(values[i * fields + f]);
+            }
+        }
+    }
+
+    // Во временный файл и атомарным переименованием в file
+    private static long save(Path file, ByteBuffer buf) throws IOException {
+        int size = buf.remaining();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    // Массивы читаются целиком (IntBuffer.get), а не по комнате
+    private static CompactWorld decode(ByteBuffer in) throws IOException {
+        try {
+            short version = in.getShort();
+            if (version != VERSION) throw new IOException("Неподдерживаемая версия образа мира: " + version);
+            int width = in.getInt();
+            int n = in.getInt();
+            String[] strings = new String[count(in)];
+            for (int i = 0; i < strings.length; i++) strings[i] = BinarySave.getString(in);
+            int[] nameIds = ints(in, n), descIds = ints(in, n), exits = ints(in, n * 4);
+            long[] locked = new long[(n + 63) >>> 6];
+            if (in.remaining() < locked.length * 8L) throw new BufferUnderflowException();
+            in.asLongBuffer().get(locked);
+            in.position(in.position() + locked.length * 8);
+            Item[] defs = new Item[count(in)];
+            for (int i = 0; i < defs.length; i++) defs[i] = BinarySave.getItem(in);
+            String[] names = new String[count(in)];
+            for (int i = 0; i < names.length; i++) names[i] = BinarySave.getString(in);
+            CompactWorld w = CompactWorld.of(width, Arrays.asList(strings), nameIds, descIds, exits, locked);
+            int stacks = count(in);
+            int[] rooms = ints(in, stacks), items = ints(in, stacks), counts = ints(in, stacks);
+            for (int i = 0; i < stacks; i++) w.items(rooms[i]).add(defs[items[i]], counts[i]);
+            int monsters = count(in);
+            rooms = ints(in, monsters);
+            int[] monsterNames = ints(in, monsters), levels = ints(in, monsters), hps = ints(in, monsters);
+            int[] maxHps = ints(in, monsters), loots = ints(in, monsters);
+            for (int i = 0; i < monsters; i++) {
+                Monster m = new Monster(names[monsterNames[i]], levels[i], maxHps[i], loots[i] < 0 ? null : defs[loots[i]]);
+                m.setHp(hps[i]);
+                w.setMonster(rooms[i], m);
+            }
+            w.room(0);// массив представлений заводится до того, как мир начнут читать сессии
+            return w;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException e) {
+            throw new IOException("Образ мира повреждён или обрезан", e);
+        }
+    }
+
+    // Число элементов таблицы; каждый занимает хотя бы 4 байта, иначе длина испорчена
+    private static int count(ByteBuffer in) {
+        int n = in.getInt();
+        if (n > in.remaining() / 4) throw new BufferUnderflowException();
+        return n;
+    }
+
+    private static int[] ints(ByteBuffer in, int n) {
+        if (in.remaining() < n * 4L) throw new BufferUnderflowException();// не выделять память под испорченную длину
+        int[] a = new int[n];
+        in.asIntBuffer().get(a);
+        in.position(in.position() + n * 4);
+        return a;
+    }
+}
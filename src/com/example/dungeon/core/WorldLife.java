@@ -0,0 +1,127 @@
+package com.example.dungeon.core;
+
+import com.example.dungeon.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Жизнь мира между командами: монстры восстанавливают HP и бродят по соседним комнатам, предметы, которые
+// лежали в комнатах, со временем появляются снова. Всё это — таймеры TimingWheel сессии, по одному-два
+// на сущность. Тики приходят только через команду tick (её же пишет журнал), поэтому мир меняется
+// в потоке команд сессии, а воспроизведение журнала повторяет те же события.
+// Таймер держит монстра и комнату сессии, поэтому в общем мире (SharedWorld) каждая ожившая комната — это
+// представление в слое сессии и копия монстра, а в мире с диска (Room.isPaged) — прочитанный регион.
+// Чтобы слой оставался тонким, а мир на диске, там оживает только окрестность в LOCAL_ROOMS комнат вокруг
+// места первого тика, а не MAX_ROOMS.
+final class WorldLife {
+    static final int REGEN_EVERY = 5;// +1 HP раненому монстру
+    static final int WANDER_EVERY = 20;// монстр пробует перейти в соседнюю комнату
+    static final int RESTOCK_EVERY = 600;// пропавший предмет снова появляется в своей комнате
+    static final int MAX_ROOMS = 1 << 18;// в огромных мирах оживает только окрестность старта
+    static final int LOCAL_ROOMS = 1 << 10;
+
+    private WorldLife() {
+    }
+
+    static void advance(GameState state, long ticks) {
+        timers(state).advance(state, ticks);
+    }
+
+    // Колесо сессии; при первом обращении после старта или load заводит таймеры для всего, что есть в мире
+    static TimingWheel<GameState> timers(GameState state) {
+        TimingWheel<GameState> wheel = state.getTimers();
+        if (wheel == null) {
+            wheel = new TimingWheel<>();
+            populate(wheel, state.getCurrent());
+            state.setTimers(wheel);
+        }
+        return wheel;
+    }
+
+    private static void populate(TimingWheel<GameState> wheel, Room start) {
+        boolean local = SharedWorld.isShared(start) || Layered.bottom(start).isPaged();
+        List<Room> rooms = BinarySave.collectRooms(start, local ? LOCAL_ROOMS : MAX_ROOMS);
+        for (int i = 0; i < rooms.size(); i++) {
+            Room r = rooms.get(i);
+            // разные начальные фазы, чтобы таймеры не срабатывали все в один тик
+            Monster m = r.getMonster();
+            if (m != null) {
+                wheel.schedule(new Regen(m), 1 + i % REGEN_EVERY);
+                wheel.schedule(new Wander(m, r, i), 1 + i % WANDER_EVERY);
+            }
+            List<Item> kinds = new ArrayList<>(1);
+            r.forEachItemStack((item, count) -> kinds.add(item));
+            for (Item item : kinds) wheel.schedule(new Restock(r, item), 1 + i % RESTOCK_EVERY);
+        }
+    }
+
+    private static final class Regen extends TimingWheel.Timer<GameState> {
+        private final Monster monster;
+
+        Regen(Monster monster) {
+            this.monster = monster;
+        }
+
+        @Override
+        protected void fire(GameState ctx, TimingWheel<GameState> wheel) {
+            if (monster.getHp() <= 0) return;// убит — таймер больше не нужен
+            if (monster.getHp() < monster.getMaxHp()) monster.setHp(monster.getHp() + 1);
+            wheel.schedule(this, REGEN_EVERY);
+        }
+    }
+
+    private static final class Wander extends TimingWheel.Timer<GameState> {
+        private final Monster monster;
+        private Room room;
+        private int turn;
+
+        Wander(Monster monster, Room room, int phase) {
+            this.monster = monster;
+            this.room = room;
+            this.turn = phase;
+        }
+
+        @Override
+        protected void fire(GameState ctx, TimingWheel<GameState> wheel) {
+            if (room.getMonster() != monster) return;// убит или мир заменён
+            wheel.schedule(this, WANDER_EVERY);
+            // монстр, с которым игрок в одной комнате, не уходит посреди боя
+            if (room.equals(ctx.getCurrent())) return;
+            Map<String, Room> exits = room.getNeighbors();
+            if (exits.isEmpty()) return;
+            // направление по кругу от счётчика — без генератора случайных чисел, журнал воспроизводится точно
+            int pick = Math.floorMod(turn++, exits.size());
+            for (Map.Entry<String, Room> e : exits.entrySet()) {
+                if (pick-- > 0) continue;
+                Room to = e.getValue();
+                if (to.isLocked() || to.getMonster() != null) return;
+                room.setMonster(null);
+                to.setMonster(monster);
+                room = to;
+                if (to.equals(ctx.getCurrent())) {
+                    ctx.getOut().println("Сюда приходит " + monster.getName() + " (ур. " + monster.getLevel() + ")");
+                }
+                return;
+            }
+        }
+    }
+
+    private static final class Restock extends TimingWheel.Timer<GameState> {
+        private final Room room;
+        private final Item item;
+
+        Restock(Room room, Item item) {
+            this.room = room;
+            this.item = item;
+        }
+
+        @Override
+        protected void fire(GameState ctx, TimingWheel<GameState> wheel) {
+            wheel.schedule(this, RESTOCK_EVERY);
+            if (room.findItem(item.getName()) != null) return;
+            room.addItem(item);
+            if (room.equals(ctx.getCurrent())) ctx.getOut().println("В комнате снова появилось: " + item.getName());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.dungeon.model;
+
+import java.util.SplittableRandom;
+
+// Правила боя на примитивах, без объектов и аллокаций. Команда fight проводит по одному обмену ударами
+// за вызов, CombatSimulator — целые бои миллионами. Состояние после обмена и итог боя упакованы в long:
+// старшие 32 бита — HP игрока, младшие — HP монстра (после обмена) или число обменов (после боя).
+public final class Combat {
+    // Бой, который за столько обменов не закончился (нулевой урон), считается поражением игрока
+    public static final int MAX_TURNS = 10_000;
+
+    private Combat() {
+    }
+
+    // Удар игрока равен его атаке
+    public static int playerDamage(int attack) {
+        return attack;
+    }
+
+    // Монстр отвечает уроном, равным своему уровню
+    public static int monsterDamage(int level) {
+        return level;
+    }
+
+    // Урон с разбросом ±spread процентов от base; при spread = 0 — ровно base, как в игре
+    public static int roll(int base, int spreadPercent, SplittableRandom rnd) {
+        int d = base * spreadPercent / 100;
+        return d <= 0 ? base : base - d + rnd.nextInt(2 * d + 1);
+    }
+
+    // Один обмен: игрок бьёт, монстр отвечает, только если выжил. Результат — pack(hpИгрока, hpМонстра)
+    public static long exchange(int playerHp, int playerDamage, int monsterHp, int monsterDamage) {
+        monsterHp -= playerDamage;
+        if (monsterHp > 0) playerHp -= monsterDamage;
+        return pack(playerHp, monsterHp);
+    }
+
+    // Бой до конца. Перед обменом игрок пьёт зелье (это не тратит ход, как команда use), если ответ монстра
+    // его убьёт. Результат — pack(hpИгрока, числоОбменов); игрок победил, если hpИгрока > 0
+    public static long fight(int playerHp, int attack, int monsterHp, int level,
+                             int potions, int potionHeal, int spreadPercent, SplittableRandom rnd) {
+        int maxHit = monsterDamage(level) + monsterDamage(level) * spreadPercent / 100;
+        int turns = 0;
+        while (turns < MAX_TURNS) {
+            while (potions > 0 && playerHp <= maxHit) {
+                playerHp += potionHeal;
+                potions--;
+            }
+            turns++;
+            long s = exchange(playerHp, roll(playerDamage(attack), spreadPercent, rnd),
+                    monsterHp, roll(monsterDamage(level), spreadPercent, rnd));
+            playerHp = first(s);
+            monsterHp = second(s);
+            if (monsterHp <= 0 || playerHp <= 0) return pack(playerHp, turns);
+        }
+        return pack(0, turns);
+    }
+
+    public static long pack(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    public static int first(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public static int second(long packed) {
+        return (int) packed;
+    }
+}
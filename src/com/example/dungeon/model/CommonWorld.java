@@ -0,0 +1,197 @@
+package com.example.dungeon.model;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+
+// Один мир для всех игроков сразу: в отличие от SharedWorld, изменения видны всем — взятый предмет пропадает
+// у всех, монстр один на всех, открытую дверь открыл для всех. Каждая комната мира заменяется представлением,
+// все методы которого выполняются под монитором этой комнаты: изменения одной комнаты идут по очереди,
+// а игроки в разных комнатах друг друга не ждут, общей блокировки нет. Составные действия, которые должны
+// выполняться целиком, — отдельные методы Room: removeItem (из двух take одного предмета успешен один)
+// и strikeMonster (урон не теряется, у монстра один победитель). Под монитором нет ввода-вывода.
+// Проходы не меняются; исходные комнаты после создания CommonWorld трогать нельзя. Индекс названий для goto
+// поэтому тоже один на всех (index).
+public final class CommonWorld {
+    private final Room start;
+    private final int rooms;
+    private Navigator.Index index;
+    private final AtomicInteger lockChanges = new AtomicInteger();
+
+    public CommonWorld(Room start) {
+        Map<Room, Site> sites = new HashMap<>();
+        Deque<Room> queue = new ArrayDeque<>();
+        sites.put(start, new Site(this, start));
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Room r = queue.poll();
+            for (Room next : r.getNeighbors().values()) {
+                if (!sites.containsKey(next)) {
+                    sites.put(next, new Site(this, next));
+                    queue.add(next);
+                }
+            }
+            for (Room next : r.getEntrances()) {// комнаты, из которых можно только выйти сюда
+                if (!sites.containsKey(next)) {
+                    sites.put(next, new Site(this, next));
+                    queue.add(next);
+                }
+            }
+        }
+        // проходы связываются до публикации мира: после конструктора neighbors только читают
+        sites.values().forEach(s -> s.link(sites));
+        this.start = sites.get(start);
+        this.rooms = sites.size();
+    }
+
+    // Стартовая комната; одна и та же для всех сессий
+    public Room start() {
+        return start;
+    }
+
+    public int rooms() {
+        return rooms;
+    }
+
+    // Мир под комнатой r; null — r не из CommonWorld
+    static CommonWorld of(Room r) {
+        return r instanceof Site s ? s.world : null;
+    }
+
+    // Индекс названий для goto — один на всех игроков, строится при первом goto
+    synchronized Navigator.Index index() {
+        if (index == null) index = Navigator.Index.of(start);
+        return index;
+    }
+
+    // Сколько раз игроки меняли замки: маршруты goto, найденные до этого, могли устареть
+    int lockChanges() {
+        return lockChanges.get();
+    }
+
+    private static final class Site extends Room {
+        private final CommonWorld world;
+        private final Room base;// читается и меняется только под монитором this
+        private Map<String, Room> neighbors;
+        private List<Room> entrances;
+
+        Site(CommonWorld world, Room base) {
+            this.world = world;
+            this.base = base;
+        }
+
+        private void link(Map<Room, Site> sites) {
+            Map<String, Room> m = new LinkedHashMap<>();
+            base.getNeighbors().forEach((dir, room) -> m.put(dir, sites.get(room)));
+            neighbors = Collections.unmodifiableMap(m);
+            entrances = base.getEntrances().stream().<Room>map(sites::get).toList();
+        }
+
+        @Override
+        public String getName() {
+            return base.getName();
+        }
+
+        @Override
+        public String getDescription() {
+            return base.getDescription();
+        }
+
+        @Override
+        public Map<String, Room> getNeighbors() {
+            return neighbors;
+        }
+
+        @Override
+        public Collection<Room> getEntrances() {
+            return entrances;
+        }
+
+        @Override
+        public void setNeighbor(String dir, Room room) {
+            throw new UnsupportedOperationException("Проходы общего мира не меняются");
+        }
+
+        @Override
+        public void removeNeighbor(String dir) {
+            throw new UnsupportedOperationException("Проходы общего мира не меняются");
+        }
+
+        // Копия: список комнаты могут менять другие игроки, пока вызывающий его обходит
+        @Override
+        public synchronized List<Item> getItems() {
+            return List.copyOf(base.getItems());
+        }
+
+        @Override
+        public synchronized void addItem(Item item, int count) {
+            base.addItem(item, count);
+            invalidate();
+        }
+
+        @Override
+        public synchronized boolean removeItem(Item item) {
+            if (!base.removeItem(item)) return false;
+            invalidate();
+            return true;
+        }
+
+        @Override
+        public synchronized void forEachItemStack(ObjIntConsumer<Item> action) {
+            base.forEachItemStack(action);
+        }
+
+        @Override
+        public synchronized Item findItem(CharSequence name) {
+            return base.findItem(name);
+        }
+
+        @Override
+        public synchronized Monster getMonster() {
+            return base.getMonster();
+        }
+
+        @Override
+        public synchronized void setMonster(Monster m) {
+            base.setMonster(m);
+            invalidate();
+        }
+
+        @Override
+        public synchronized int strikeMonster(Monster m, int damage) {
+            return super.strikeMonster(m, damage);
+        }
+
+        @Override
+        public synchronized String describe() {
+            return super.describe();
+        }
+
+        @Override
+        public synchronized int getLocked() {
+            return base.getLocked();
+        }
+
+        @Override
+        public synchronized void setLocked(int locked) {
+            base.setLocked(locked);
+            invalidate();
+            world.lockChanges.incrementAndGet();
+        }
+
+        @Override
+        public boolean hasPosition() {
+            return base.hasPosition();
+        }
+
+        @Override
+        public int getX() {
+            return base.getX();
+        }
+
+        @Override
+        public int getY() {
+            return base.getY();
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.example.dungeon.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+
+// Компактное хранение мира для генерируемых карт на миллионы комнат.
+// Комната — это номер id, все поля лежат в параллельных массивах:
+//   nameIds/descIds — индексы в общей таблице строк (одинаковые названия хранятся один раз),
+//   exits           — 4 выхода на комнату (north, south, east, west), -1 — нет выхода,
+//   locked          — битовое множество запертых комнат,
+//   items/monsters  — слоты, которые остаются null, пока в комнате ничего нет.
+// Массивы — 32 байта на комнату; в bench RoomFootprint (предмет в каждой десятой комнате) выходит ~50,5 байт:
+// ещё ~18 даёт ItemContainer (~185 байт на непустую комнату). Обычный Room с HashMap и ArrayList — ~410 байт.
+// Для команд Game и Key.apply комнаты выдаются как представления Room (room(id)); у одного id
+// всегда один и тот же объект-представление, поэтому сравнение по ссылке и IdentityHashMap работают.
+// Описание комнаты-представления не кэшируется: массивы мира можно менять и напрямую, мимо Room.
+public final class CompactWorld {
+    public static final String[] DIRS = {"north", "south", "east", "west"};
+    public static final int NORTH = 0, SOUTH = 1, EAST = 2, WEST = 3;
+    private static final VarHandle VIEWS = MethodHandles.arrayElementVarHandle(Room[].class);
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private int size;
+    private int[] nameIds;
+    private int[] descIds;
+    private int[] exits;
+    private long[] locked;
+    private ItemContainer[] items;
+    private Monster[] monsters;
+    private Room[] views;
+    private int gridWidth;// > 0, если мир — сетка с id = y * gridWidth + x
+    private int lockChanges;// сколько раз меняли замки; по нему Navigator узнаёт, что поле расстояний устарело
+
+    public CompactWorld(int capacity) {
+        capacity = Math.max(capacity, 16);
+        nameIds = new int[capacity];
+        descIds = new int[capacity];
+        exits = new int[capacity * 4];
+        Arrays.fill(exits, -1);
+        locked = new long[(capacity + 63) >>> 6];
+        items = new ItemContainer[capacity];
+        monsters = new Monster[capacity];
+    }
+
+    // Синтетическая сетка width x height (id = y * width + x), все соседние клетки связаны;
+    // зелье в каждой 7-й комнате, монстр в каждой 11-й. Для тестов, бенчмарков и файлов RegionStore
+    public static CompactWorld grid(int width, int height) {
+        CompactWorld w = new CompactWorld(width * height);
+        w.gridWidth = width;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int id = w.addRoom("Коридор", "Сырые каменные стены.");
+                if (x > 0) w.link(id, WEST, id - 1);
+                if (y > 0) w.link(id, NORTH, id - width);
+                if (id % 7 == 3) w.items(id).add(ItemCatalog.SMALL_POTION);
+                if (id % 11 == 5) w.setMonster(id, new Monster("Крыса", 1, 4, null));
+            }
+        }
+        return w;
+    }
+
+    // Сетка width x height без проходов, все комнаты уже заведены (для WorldGenerator). Комнаты с разными id
+    // можно заполнять из разных потоков — кроме locked (биты в общих словах) и строк (intern)
+    static CompactWorld blank(int width, int height) {
+        CompactWorld w = new CompactWorld(width * height);
+        w.gridWidth = width;
+        w.size = width * height;
+        return w;
+    }
+
+    // Мир из готовых массивов (образ мира WorldImage): комнат nameIds.length, массивы не копируются, предметов
+    // и монстров пока нет. Номера строк — в strings, выходы — номера комнат или -1; иначе IllegalArgumentException
+    public static CompactWorld of(int gridWidth, List<String> strings, int[] nameIds, int[] descIds, int[] exits,
+                                  long[] locked) {
+        int n = nameIds.length;
+        if (n == 0 || descIds.length != n || exits.length != n * 4 || locked.length != (n + 63) >>> 6
+                || gridWidth < 0 || gridWidth > 0 && n % gridWidth != 0) {
+            throw new IllegalArgumentException("Размеры массивов мира не сходятся");
+        }
+        for (int i = 0; i < n; i++) {
+            if (nameIds[i] < 0 || nameIds[i] >= strings.size() || descIds[i] < 0 || descIds[i] >= strings.size()) {
+                throw new IllegalArgumentException("Нет строки для комнаты " + i);
+            }
+        }
+        for (int to : exits) if (to < -1 || to >= n) throw new IllegalArgumentException("Выход в несуществующую комнату " + to);
+        CompactWorld w = new CompactWorld(1);
+        strings.forEach(w::intern);
+        if (w.strings.size() != strings.size()) throw new IllegalArgumentException("Строки мира повторяются");
+        w.size = n;
+        w.nameIds = nameIds;
+        w.descIds = descIds;
+        w.exits = exits;
+        w.locked = locked;
+        w.items = new ItemContainer[n];
+        w.monsters = new Monster[n];
+        w.gridWidth = gridWidth;
+        return w;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Таблица строк мира; nameId и descId — номера в ней
+    public List<String> strings() {
+        return Collections.unmodifiableList(strings);
+    }
+
+    public int nameId(int id) {
+        return nameIds[id];
+    }
+
+    public int descId(int id) {
+        return descIds[id];
+    }
+
+    public int addRoom(String name, String description) {
+        if (size == nameIds.length) grow();
+        nameIds[size] = intern(name);
+        descIds[size] = intern(description);
+        return size++;
+    }
+
+    int intern(String s) {
+        Integer id = stringIds.get(s);
+        if (id != null) return id;
+        strings.add(s);
+        stringIds.put(s, strings.size() - 1);
+        return strings.size() - 1;
+    }
+
+    private void grow() {
+        int n = nameIds.length + (nameIds.length >> 1);
+        nameIds = Arrays.copyOf(nameIds, n);
+        descIds = Arrays.copyOf(descIds, n);
+        int old = exits.length;
+        exits = Arrays.copyOf(exits, n * 4);
+        Arrays.fill(exits, old, exits.length, -1);
+        locked = Arrays.copyOf(locked, (n + 63) >>> 6);
+        items = Arrays.copyOf(items, n);
+        monsters = Arrays.copyOf(monsters, n);
+        if (views != null) views = Arrays.copyOf(views, n);
+    }
+
+    public String name(int id) {
+        return strings.get(nameIds[id]);
+    }
+
+    public void setName(int id, String name) {
+        nameIds[id] = intern(name);
+    }
+
+    // Название и описание — номера из intern
+    void setText(int id, int nameId, int descId) {
+        nameIds[id] = nameId;
+        descIds[id] = descId;
+    }
+
+    public String description(int id) {
+        return strings.get(descIds[id]);
+    }
+
+    public int exit(int id, int dir) {
+        return exits[id * 4 + dir];
+    }
+
+    public void setExit(int id, int dir, int to) {
+        exits[id * 4 + dir] = to;
+    }
+
+    // Двусторонний проход: north <-> south, east <-> west
+    public void link(int from, int dir, int to) {
+        setExit(from, dir, to);
+        setExit(to, dir ^ 1, from);
+    }
+
+    public boolean isLocked(int id) {
+        return (locked[id >>> 6] & (1L << id)) != 0;
+    }
+
+    public void setLocked(int id, boolean value) {
+        if (value) locked[id >>> 6] |= 1L << id;
+        else locked[id >>> 6] &= ~(1L << id);
+        lockChanges++;
+    }
+
+    int lockChanges() {
+        return lockChanges;
+    }
+
+    public Monster monster(int id) {
+        return monsters[id];
+    }
+
+    public void setMonster(int id, Monster m) {
+        monsters[id] = m;
+    }
+
+    // Контейнер предметов создаётся при первом добавлении
+    public ItemContainer.Slot items(int id) {
+        return new ItemSlot(id);
+    }
+
+    public static int dirIndex(String dir) {
+        for (int i = 0; i < DIRS.length; i++) if (DIRS[i].equals(dir)) return i;
+        return -1;
+    }
+
+    // Мир, которому принадлежит комната r; null — r не представление CompactWorld
+    static CompactWorld of(Room r) {
+        return r instanceof CompactRoom c ? c.world() : null;
+    }
+
+    // Номер комнаты r, для которой of(r) != null
+    static int id(Room r) {
+        return ((CompactRoom) r).id;
+    }
+
+    // Ширина сетки (id = y * gridWidth + x); 0 — мир не сетка
+    public int gridWidth() {
+        return gridWidth;
+    }
+
+    // Представление комнаты id, если его уже завели; null — нет (новое не заводится)
+    Room existingRoom(int id) {
+        Room[] v = views;
+        return v == null ? null : (Room) VIEWS.getAcquire(v, id);
+    }
+
+    // Представление создаётся compareAndExchange: сессии общего мира (--shared-world, --undo) читают комнаты
+    // из разных потоков, и двое не должны получить два разных объекта для одного id. Сам массив заводится
+    // при первом вызове, поэтому первый room() нужно сделать до того, как мир начнут читать сессии
+    public Room room(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException(id);
+        if (views == null) views = new Room[nameIds.length];
+        Room r = (Room) VIEWS.getAcquire(views, id);
+        if (r == null) {
+            Room created = new CompactRoom(id);
+            r = (Room) VIEWS.compareAndExchangeRelease(views, id, null, created);
+            if (r == null) r = created;
+        }
+        return r;
+    }
+
+    // Представление комнаты id в виде Room: все чтения и изменения идут в массивы мира
+    private final class CompactRoom extends Room {
+        private final int id;
+
+        CompactRoom(int id) {
+            this.id = id;
+        }
+
+        CompactWorld world() {
+            return CompactWorld.this;
+        }
+
+        @Override
+        public String getName() {
+            return name(id);
+        }
+
+        @Override
+        public boolean hasPosition() {
+            return gridWidth > 0;
+        }
+
+        @Override
+        public int getX() {
+            return gridWidth > 0 ? id % gridWidth : 0;
+        }
+
+        @Override
+        public int getY() {
+            return gridWidth > 0 ? id / gridWidth : 0;
+        }
+
+        @Override
+        public String getDescription() {
+            return description(id);
+        }
+
+        @Override
+        public Map<String, Room> getNeighbors() {
+            return new Exits(id);
+        }
+
+        @Override
+        public void setNeighbor(String dir, Room room) {
+            int d = dirIndex(dir);
+            if (!(room instanceof CompactRoom target) || target.world() != CompactWorld.this) {
+                throw new IllegalArgumentException("Выход должен вести в комнату этого же мира");
+            }
+            if (d < 0) throw new IllegalArgumentException("Неизвестное направление: " + dir);
+            setExit(id, d, target.id);
+        }
+
+        @Override
+        public void removeNeighbor(String dir) {
+            int d = dirIndex(dir);
+            if (d >= 0) setExit(id, d, -1);
+        }
+
+        @Override
+        public List<Item> getItems() {
+            return Collections.unmodifiableList(items(id));
+        }
+
+        @Override
+        public void addItem(Item item, int count) {
+            items(id).add(item, count);
+        }
+
+        @Override
+        public boolean removeItem(Item item) {
+            return items(id).remove(item);
+        }
+
+        @Override
+        public void forEachItemStack(ObjIntConsumer<Item> action) {
+            items(id).forEachStack(action);
+        }
+
+        @Override
+        public Item findItem(CharSequence name) {
+            return items(id).find(name);
+        }
+
+        @Override
+        public String describe() {
+            return render();
+        }
+
+        @Override
+        public Monster getMonster() {
+            return monster(id);
+        }
+
+        @Override
+        public void setMonster(Monster m) {
+            CompactWorld.this.setMonster(id, m);
+        }
+
+        @Override
+        public int getLocked() {
+            return CompactWorld.this.isLocked(id) ? 1 : 0;
+        }
+
+        @Override
+        public void setLocked(int value) {
+            CompactWorld.this.setLocked(id, value == 1);
+        }
+    }
+
+    // Выходы комнаты как Map<String, Room> только для чтения; менять — через Room.setNeighbor/removeNeighbor
+    private final class Exits extends AbstractMap<String, Room> {
+        private final int id;
+
+        Exits(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public Room get(Object key) {
+            int dir = key instanceof String s ? dirIndex(s) : -1;
+            if (dir < 0) return null;
+            int to = exit(id, dir);
+            return to < 0 ? null : room(to);
+        }
+
+        @Override
+        public Set<Entry<String, Room>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Room>> iterator() {
+                    return new Iterator<>() {
+                        private int dir = advance(0);
+
+                        private int advance(int from) {
+                            while (from < 4 && exit(id, from) < 0) from++;
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return dir < 4;
+                        }
+
+                        @Override
+                        public Entry<String, Room> next() {
+                            if (dir >= 4) throw new NoSuchElementException();
+                            Entry<String, Room> e = new SimpleImmutableEntry<>(DIRS[dir], room(exit(id, dir)));
+                            dir = advance(dir + 1);
+                            return e;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int n = 0;
+                    for (int d = 0; d < 4; d++) if (exit(id, d) >= 0) n++;
+                    return n;
+                }
+            };
+        }
+    }
+
+    // Предметы комнаты id в слоте items[id]
+    private final class ItemSlot extends ItemContainer.Slot {
+        private final int id;
+
+        ItemSlot(int id) {
+            this.id = id;
+        }
+
+        @Override
+        protected ItemContainer container() {
+            return items[id];
+        }
+
+        @Override
+        protected ItemContainer createContainer() {
+            return items[id] = new ItemContainer();
+        }
+
+        @Override
+        protected void releaseContainer() {
+            items[id] = null;
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package com.example.dungeon.model;
 
+import java.io.PrintStream;
+
 public class GameState {
     private Player player;
     private Room current;
     private int score;
+    private PrintStream out = System.out;// куда сессия печатает ответы (консоль или сокет)
+    private boolean finished;// сессия завершена (exit или смерть игрока)
+    private Navigator navigator;// индекс комнат и кэш маршрутов для goto, строится при первом goto
+    private TimingWheel<GameState> timers;// события мира (WorldLife), заводятся при первом тике
+    private WorldHistory history;// версии для undo/redo; null — история не ведётся
 
     public Player getPlayer() {
         return player;
@@ -28,4 +35,52 @@ public class GameState {
     public void addScore(int d) {
         this.score += d;
     }
+
+    public void setScore(int score) {
+        this.score = score;
+    }
+
+    // Навигатор по текущему миру; строится заново, если мир сменился (например, после load)
+    public Navigator getNavigator() {
+        if (navigator == null || !navigator.covers(current)) navigator = new Navigator(current);
+        return navigator;
+    }
+
+    // Открытая дверь может дать путь короче — сохранённые маршруты больше не годятся
+    public void invalidateRoutes() {
+        if (navigator != null) navigator.invalidateRoutes();
+    }
+
+    public TimingWheel<GameState> getTimers() {
+        return timers;
+    }
+
+    // null — мир заменён (load), таймеры будут заведены заново для нового мира
+    public void setTimers(TimingWheel<GameState> timers) {
+        this.timers = timers;
+    }
+
+    public WorldHistory getHistory() {
+        return history;
+    }
+
+    public void setHistory(WorldHistory history) {
+        this.history = history;
+    }
+
+    public PrintStream getOut() {
+        return out;
+    }
+
+    public void setOut(PrintStream out) {
+        this.out = out;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void finish() {
+        this.finished = true;
+    }
 }
@@ -2,6 +2,7 @@ package com.example.dungeon.model;
 
 public abstract class Item {
     private final String name;
+    private int id = -1;// номер в ItemCatalog; -1 — предмет создан напрямую и в каталог не попал
 
     protected Item(String name) {
         this.name = name;
@@ -11,5 +12,13 @@ public abstract class Item {
         return name;
     }
 
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
     public abstract void apply(GameState ctx);
 }
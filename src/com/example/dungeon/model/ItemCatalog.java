@@ -0,0 +1,93 @@
+package com.example.dungeon.model;
+
+import java.util.*;
+
+// Общий каталог описаний предметов (flyweight). Предметы неизменяемы, поэтому все «Малые зелья» с одинаковыми
+// характеристиками — один и тот же объект, а комнаты и инвентари хранят только стопки (предмет, количество).
+// Каждое описание получает номер id в порядке регистрации; по номеру и по имени его можно найти обратно.
+// Каталог один на процесс и потокобезопасен: в серверном режиме сессии создают предметы одновременно.
+public final class ItemCatalog {
+    // equals/hashCode написаны явно: сгенерированные для record собираются через ObjectMethods при первом
+    // вызове, а первый вызов — регистрация SMALL_POTION при запуске (≈60 мс до первого приглашения)
+    private record Definition(Class<? extends Item> type, String name, int value) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Definition d && type == d.type && value == d.value && Objects.equals(name, d.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return (type.hashCode() * 31 + Objects.hashCode(name)) * 31 + value;
+        }
+    }
+
+    private static final Map<Definition, Item> interned = new HashMap<>();
+    private static final Map<String, Item> byName = new HashMap<>();
+    private static final List<Item> byId = new ArrayList<>();
+
+    // Предметы встроенного мира; по ним старый save.txt восстанавливает настоящие характеристики
+    public static final Potion SMALL_POTION = potion("Малое зелье", 5);
+    public static final Potion MEDIUM_POTION = potion("Среднее зелье", 10);
+    public static final Weapon STEEL_BLADE = weapon("Стальной клинок", 11);
+    public static final Key CASTLE_KEY = key("Ключ от замка");
+
+    private ItemCatalog() {
+    }
+
+    public static Potion potion(String name, int heal) {
+        return intern(new Potion(name, heal));
+    }
+
+    public static Weapon weapon(String name, int bonus) {
+        return intern(new Weapon(name, bonus));
+    }
+
+    public static Key key(String name) {
+        return intern(new Key(name));
+    }
+
+    // Общий экземпляр с теми же типом, именем и характеристиками, что у item (при первой встрече — сам item)
+    public static <T extends Item> T intern(T item) {
+        if (item == null || item.getId() >= 0) return item;// уже из каталога
+        return register(item);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static synchronized <T extends Item> T register(T item) {
+        if (item.getId() >= 0) return item;
+        Definition d = new Definition(item.getClass(), item.getName(), value(item));
+        Item shared = interned.get(d);
+        if (shared != null) return (T) shared;
+        item.setId(byId.size());
+        byId.add(item);
+        interned.put(d, item);
+        byName.putIfAbsent(ItemContainer.fold(item.getName()), item);
+        return item;
+    }
+
+    public static synchronized Item get(int id) {
+        return byId.get(id);
+    }
+
+    // Первое зарегистрированное описание с таким именем (без учёта регистра) или null
+    public static synchronized Item find(String name) {
+        return byName.get(ItemContainer.fold(name));
+    }
+
+    public static synchronized int size() {
+        return byId.size();
+    }
+
+    // Снимок всех описаний в порядке номеров
+    public static synchronized List<Item> all() {
+        return List.copyOf(byId);
+    }
+
+    // instanceof, а не switch по типам: тот разворачивается через SwitchBootstraps и при первом вызове
+    // (регистрация SMALL_POTION при запуске) стоит больше 100 мс до первого приглашения
+    private static int value(Item item) {
+        if (item instanceof Potion p) return p.getHeal();
+        if (item instanceof Weapon w) return w.getBonus();
+        return 0;
+    }
+}
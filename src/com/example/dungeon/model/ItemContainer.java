@@ -0,0 +1,382 @@
+package com.example.dungeon.model;
+
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+
+// Набор предметов инвентаря или комнаты в виде стопок (предмет, количество): одинаковые предметы из ItemCatalog —
+// один объект, поэтому сто «Малых зелий» занимают одну запись. Индексы обновляются при каждом add/remove:
+//   stacks  — стопки в порядке добавления, взять или убрать один предмет — O(1)
+//             (Potion/Weapon.apply убирают себя сами),
+//   byName  — имя без учёта регистра -> предметы с этим именем (Item или ArrayDeque, если описаний несколько),
+//   byType  — тип предмета -> количество и отсортированные имена для команды inventory.
+// byName и byType строятся при первом запросе: у большинства комнат их никто не спрашивает.
+// Снаружи это обычный List<Item>, где предмет из стопки повторяется count раз; вставка поддерживается
+// только в конец, а get(index) идёт перебором стопок — для обхода нужен итератор.
+public final class ItemContainer extends AbstractList<Item> {
+    private final LinkedHashMap<Item, Stack> stacks = new LinkedHashMap<>(4);
+    private int size;
+    private Map<String, Object> byName;
+    private SortedMap<String, TypeGroup> byType;
+
+    private static final class Stack {
+        int count;
+    }
+
+    // Имена предметов одного типа: имя -> сколько штук
+    private static final class TypeGroup {
+        int count;
+        final SortedMap<String, Integer> names = new TreeMap<>();
+    }
+
+    public ItemContainer() {
+    }
+
+    public ItemContainer(Collection<? extends Item> items) {
+        addAll(items);
+    }
+
+    // Имя без учёта регистра: посимвольный Character.toLowerCase, как у Name, чтобы ключи совпадали
+    static String fold(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.toLowerCase(c) == c) continue;
+            char[] folded = name.toCharArray();
+            for (int j = i; j < folded.length; j++) folded[j] = Character.toLowerCase(folded[j]);
+            return new String(folded);
+        }
+        return name;
+    }
+
+    // Ключ поиска в индексе имён: Name служит ключом сам, строка сворачивается
+    static Object key(CharSequence name) {
+        return name instanceof Name n ? n : fold(name.toString());
+    }
+
+    // Имя предмета совпадает с name без учёта регистра; без создания строк
+    static boolean sameName(CharSequence name, String itemName) {
+        if (name.length() != itemName.length()) return false;
+        for (int i = 0; i < itemName.length(); i++) {
+            if (Character.toLowerCase(name.charAt(i)) != Character.toLowerCase(itemName.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    // Имя предмета поверх чужого буфера (аргументы CommandLine): поиск по нему не создаёт строку.
+    // hashCode и equals считаются как у ключей индекса — строк fold(имя), поэтому Name само ищется в byName
+    public abstract static class Name implements CharSequence {
+        @Override
+        public final int hashCode() {
+            int h = 0;
+            for (int i = 0, n = length(); i < n; i++) h = 31 * h + Character.toLowerCase(charAt(i));
+            return h;
+        }
+
+        @Override
+        public final boolean equals(Object o) {
+            if (!(o instanceof String s) || s.length() != length()) return false;
+            for (int i = 0; i < s.length(); i++) if (s.charAt(i) != Character.toLowerCase(charAt(i))) return false;
+            return true;
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(this).toString();
+        }
+    }
+
+    // Первый добавленный предмет с таким именем (без учёта регистра) или null, O(1)
+    public Item find(CharSequence name) {
+        Object v = names().get(key(name));
+        if (v instanceof ArrayDeque<?> d) return (Item) d.peekFirst();
+        return (Item) v;
+    }
+
+    // Сколько штук item лежит в стопке
+    public int count(Item item) {
+        Stack s = stacks.get(item);
+        return s == null ? 0 : s.count;
+    }
+
+    // Сколько предметов типа type (простое имя класса: Potion, Weapon, Key)
+    public int count(String type) {
+        TypeGroup g = types0().get(type);
+        return g == null ? 0 : g.count;
+    }
+
+    // Типы предметов в алфавитном порядке
+    public Set<String> types() {
+        return Collections.unmodifiableSet(types0().keySet());
+    }
+
+    // Имена предметов типа type по алфавиту с количеством одинаковых
+    public SortedMap<String, Integer> names(String type) {
+        TypeGroup g = types0().get(type);
+        return g == null ? Collections.emptySortedMap() : Collections.unmodifiableSortedMap(g.names);
+    }
+
+    // Обход по стопкам: предмет и сколько его штук
+    public void forEachStack(ObjIntConsumer<Item> action) {
+        for (Map.Entry<Item, Stack> e : stacks.entrySet()) action.accept(e.getKey(), e.getValue().count);
+    }
+
+    public int stackCount() {
+        return stacks.size();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return stacks.containsKey(o);
+    }
+
+    @Override
+    public boolean add(Item item) {
+        add(item, 1);
+        return true;
+    }
+
+    // Кладёт count штук item одной стопкой; предмет заменяется общим экземпляром из ItemCatalog
+    public void add(Item item, int count) {
+        Objects.requireNonNull(item);
+        if (count <= 0) return;
+        item = ItemCatalog.intern(item);
+        Stack s = stacks.get(item);
+        if (s == null) {
+            stacks.put(item, s = new Stack());
+            if (byName != null) indexName(item);
+        }
+        s.count += count;
+        size += count;
+        if (byType != null) countType(item, count);
+        modCount++;
+    }
+
+    @Override
+    public void add(int index, Item item) {
+        if (index != size()) throw new UnsupportedOperationException("Предметы добавляются только в конец");
+        add(item);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        Stack s = stacks.get(o);
+        if (s == null) return false;
+        Item item = (Item) o;
+        if (--s.count == 0) {
+            stacks.remove(item);
+            if (byName != null) unindexName(item);
+        }
+        size--;
+        if (byType != null) countType(item, -1);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Item remove(int index) {
+        Item item = get(index);
+        remove(item);
+        return item;
+    }
+
+    @Override
+    public Item get(int index) {
+        Objects.checkIndex(index, size);
+        for (Map.Entry<Item, Stack> e : stacks.entrySet()) {
+            if (index < e.getValue().count) return e.getKey();
+            index -= e.getValue().count;
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public void clear() {
+        stacks.clear();
+        size = 0;
+        byName = null;
+        byType = null;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Item> iterator() {
+        Iterator<Map.Entry<Item, Stack>> it = stacks.entrySet().iterator();
+        return new Iterator<>() {
+            private Map.Entry<Item, Stack> cur;
+            private int left;// сколько ещё раз вернуть cur
+            private boolean canRemove;
+
+            @Override
+            public boolean hasNext() {
+                return left > 0 || it.hasNext();
+            }
+
+            @Override
+            public Item next() {
+                if (left == 0) {
+                    cur = it.next();
+                    left = cur.getValue().count;
+                }
+                left--;
+                canRemove = true;
+                return cur.getKey();
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove) throw new IllegalStateException();
+                canRemove = false;
+                Item item = cur.getKey();
+                if (--cur.getValue().count == 0) {
+                    it.remove();
+                    if (byName != null) unindexName(item);
+                }
+                size--;
+                if (byType != null) countType(item, -1);
+                modCount++;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<Item> spliterator() {
+        return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    private Map<String, Object> names() {
+        if (byName == null) {
+            byName = new HashMap<>();
+            for (Item item : stacks.keySet()) indexName(item);
+        }
+        return byName;
+    }
+
+    private SortedMap<String, TypeGroup> types0() {
+        if (byType == null) {
+            byType = new TreeMap<>();
+            forEachStack(this::countType);
+        }
+        return byType;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void indexName(Item item) {
+        byName.merge(fold(item.getName()), item, (old, it) -> {
+            if (old instanceof ArrayDeque<?> d) {
+                ((ArrayDeque<Item>) d).addLast((Item) it);
+                return d;
+            }
+            ArrayDeque<Item> d = new ArrayDeque<>(4);
+            d.add((Item) old);
+            d.add((Item) it);
+            return d;
+        });
+    }
+
+    private void unindexName(Item item) {
+        String key = fold(item.getName());
+        Object v = byName.get(key);
+        if (v instanceof ArrayDeque<?> d) {
+            // обычно убирается стопка, которую вернул find, — голова очереди
+            if (d.peekFirst() == item) d.pollFirst();
+            else d.removeFirstOccurrence(item);
+            if (d.size() == 1) byName.put(key, d.peekFirst());
+        } else if (v == item) {
+            byName.remove(key);
+        }
+    }
+
+    private void countType(Item item, int delta) {
+        String type = item.getClass().getSimpleName();
+        TypeGroup g = byType.computeIfAbsent(type, t -> new TypeGroup());
+        g.count += delta;
+        if (g.count == 0) byType.remove(type);
+        else g.names.compute(item.getName(), (n, c) -> {
+            int v = (c == null ? 0 : c) + delta;
+            return v == 0 ? null : v;
+        });
+    }
+
+    // Предметы, которые лежат не в самой комнате, а в слоте внешнего хранилища (CompactWorld, RegionStore).
+    // Пока слот пуст, список виден пустым и ничего не занимает; контейнер создаётся при первом add
+    // и отдаётся обратно, когда опустеет
+    public abstract static class Slot extends AbstractList<Item> {
+        // Контейнер слота или null, если в нём ничего нет
+        protected abstract ItemContainer container();
+
+        protected abstract ItemContainer createContainer();
+
+        protected abstract void releaseContainer();
+
+        public Item find(CharSequence name) {
+            ItemContainer c = container();
+            return c == null ? null : c.find(name);
+        }
+
+        public void forEachStack(ObjIntConsumer<Item> action) {
+            ItemContainer c = container();
+            if (c != null) c.forEachStack(action);
+        }
+
+        public void add(Item item, int count) {
+            ItemContainer c = container();
+            (c == null ? createContainer() : c).add(item, count);
+        }
+
+        @Override
+        public Item get(int index) {
+            ItemContainer c = container();
+            if (c == null) throw new IndexOutOfBoundsException(index);
+            return c.get(index);
+        }
+
+        @Override
+        public int size() {
+            ItemContainer c = container();
+            return c == null ? 0 : c.size();
+        }
+
+        @Override
+        public void add(int index, Item item) {
+            ItemContainer c = container();
+            (c == null ? createContainer() : c).add(index, item);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            ItemContainer c = container();
+            if (c == null || !c.remove(o)) return false;
+            if (c.isEmpty()) releaseContainer();
+            return true;
+        }
+
+        @Override
+        public Item remove(int index) {
+            ItemContainer c = container();
+            if (c == null) throw new IndexOutOfBoundsException(index);
+            Item removed = c.remove(index);
+            if (c.isEmpty()) releaseContainer();
+            return removed;
+        }
+
+        @Override
+        public Iterator<Item> iterator() {
+            ItemContainer c = container();
+            return c == null ? Collections.emptyIterator() : c.iterator();
+        }
+
+        @Override
+        public void clear() {
+            if (container() != null) releaseContainer();
+        }
+    }
+}
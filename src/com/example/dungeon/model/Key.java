@@ -15,7 +15,8 @@ public class Key extends Item {
             currentRoom.getNeighbors().values().stream()
                     .filter(room -> room.getLocked() == 1)
                     .forEach(room -> room.setLocked(0));
-            System.out.println("Дверь открыта ключом! ");
+            ctx.invalidateRoutes();
+            ctx.getOut().println("Дверь открыта ключом! ");
         }
     }
 }
@@ -0,0 +1,23 @@
+package com.example.dungeon.model;
+
+import java.util.function.BiConsumer;
+
+// Комната-представление слоя сессии поверх неизменяемой базы (SharedWorld, WorldHistory). Сохранение берёт
+// у слоя только отличия сессии — в потоке сессии, между командами, — а базу читает потом в любом потоке
+public interface Layered {
+    // Базовая комната под представлением; сама может быть представлением нижнего слоя
+    Room base();
+
+    // Все отличия слоя, которому принадлежит комната: базовая комната -> её состояние в сессии
+    void forEachChange(BiConsumer<Room, RoomSnapshot> action);
+
+    // Представление комнаты самой нижней базы bottom в слое, которому принадлежит эта комната, если слой его
+    // уже завёл; null — нет (состояние комнаты в слое как в его базе). Новых представлений не заводит
+    Room existing(Room bottom);
+
+    // Комната самой нижней базы под r (r, если это не представление)
+    static Room bottom(Room r) {
+        while (r instanceof Layered l) r = l.base();
+        return r;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.dungeon.model;
+
+import java.util.*;
+import java.util.function.Function;
+
+// Соседи комнаты-представления без своей копии карты: комнаты базовой карты подменяются представлениями
+// на лету (view). Только для чтения — проходы у миров-представлений не меняются
+final class MappedNeighbors extends AbstractMap<String, Room> {
+    private final Map<String, Room> exits;
+    private final Function<Room, ? extends Room> view;
+
+    MappedNeighbors(Map<String, Room> exits, Function<Room, ? extends Room> view) {
+        this.exits = exits;
+        this.view = view;
+    }
+
+    @Override
+    public Room get(Object dir) {
+        Room r = exits.get(dir);
+        return r == null ? null : view.apply(r);
+    }
+
+    @Override
+    public boolean containsKey(Object dir) {
+        return exits.containsKey(dir);
+    }
+
+    @Override
+    public int size() {
+        return exits.size();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return exits.keySet();
+    }
+
+    @Override
+    public Set<Entry<String, Room>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return exits.size();
+            }
+
+            @Override
+            public Iterator<Entry<String, Room>> iterator() {
+                Iterator<Entry<String, Room>> it = exits.entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Room> next() {
+                        Entry<String, Room> e = it.next();
+                        return new SimpleImmutableEntry<>(e.getKey(), view.apply(e.getValue()));
+                    }
+                };
+            }
+        };
+    }
+}
@@ -3,15 +3,20 @@ package com.example.dungeon.model;
 public class Monster extends Entity {
     private int level;
     private Item loot;
+    private final int maxHp;// до скольких HP монстр восстанавливается между боями (WorldLife)
 
     public Monster(String name, int level, int hp) {
-        super(name, hp);
-        this.level = level;
+        this(name, level, hp, null);
     }
     public Monster(String name, int level, int hp, Item loot) {
         super(name, hp);
         this.level = level;
         this.loot = loot;
+        this.maxHp = hp;
+    }
+
+    public int getMaxHp() {
+        return maxHp;
     }
 
     public int getLevel() {
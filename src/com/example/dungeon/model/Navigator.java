@@ -0,0 +1,614 @@
+package com.example.dungeon.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Поиск пути для goto. Индекс названий комнат строится один раз обходом мира от стартовой комнаты;
+// сам путь ищется по незапертым комнатам: A*, если у старта и единственной цели есть координаты,
+// иначе обход в ширину. Найденные маршруты (и то, что дойти нельзя) кэшируются, кэш сбрасывается, когда
+// ключ открывает дверь, а в общем мире (CommonWorld) — когда дверь открыл любой игрок.
+// У мира из слоёв (Layered) индекс строится по нижней базе — названия и проходы у слоёв те же, — и у общего
+// мира он один на все сессии (SharedWorld.index). Поиск идёт по комнатам сессии (замки у слоя свои)
+// и заводит представления только для комнат, которые просмотрел.
+// Общий мир всех игроков (CommonWorld) тоже индексируется один раз (CommonWorld.index).
+// Если под комнатами CompactWorld, и индекс, и поиск работают с номерами комнат (IdIndex, Ids): названия —
+// номера строк мира, выходы и замки читаются из массивов мира, просмотренное и очередь лежат в примитивных
+// массивах, которые переиспользуются между запросами, — ни объектов на шаг поиска, ни представлений комнат.
+// Комнаты слоя отличаются от базы только замком; его даёт locked().
+// Мир с диска (Room.isPaged) целиком не индексируется: индекс — PAGED_ROOMS ближайших к игроку комнат,
+// путь ищется только по ним, а когда игрок выходит за индекс, GameState строит новый вокруг него.
+public final class Navigator {
+    private static final int CACHE_SIZE = 4096;
+    static final int PAGED_ROOMS = 1 << 14;
+    // маршрут в кэше: дойти нельзя (null в кэше не отличить от промаха)
+    private static final List<String> UNREACHABLE = Collections.unmodifiableList(new ArrayList<>(0));
+
+    private record RouteKey(Room from, String name) {
+    }
+
+    // Названия и комнаты мира; после построения не меняется (кроме кэшей, которые потокобезопасны),
+    // поэтому его могут читать несколько сессий
+    abstract static class Index {
+        // Все комнаты, достижимые из start (запертые тоже)
+        static Index of(Room start) {
+            return of(start, Integer.MAX_VALUE);
+        }
+
+        // Не больше limit ближайших к start комнат в порядке обхода в ширину; CompactWorld — всегда целиком
+        static Index of(Room start, int limit) {
+            CompactWorld world = CompactWorld.of(start);
+            return world != null ? new IdIndex(world, CompactWorld.id(start)) : new RoomIndex(start, limit);
+        }
+
+        // Комната базы r проиндексирована
+        abstract boolean covers(Room r);
+
+        // проиндексировано всё, что достижимо из start
+        abstract boolean complete();
+
+        abstract boolean knows(String key);
+    }
+
+    private static final class RoomIndex extends Index {
+        private final Map<String, List<Room>> byName = new HashMap<>();
+        private final Map<String, Set<Room>> targets = new ConcurrentHashMap<>();
+        private final Set<Room> rooms = new HashSet<>();
+        private final boolean complete;
+
+        RoomIndex(Room start, int limit) {
+            ArrayDeque<Room> queue = new ArrayDeque<>();
+            queue.add(start);
+            rooms.add(start);
+            for (int indexed = 0; !queue.isEmpty() && indexed < limit; indexed++) {
+                Room r = queue.poll();
+                byName.computeIfAbsent(key(r.getName()), k -> new ArrayList<>(1)).add(r);
+                for (Room n : r.getNeighbors().values()) {
+                    if (rooms.add(n)) queue.add(n);
+                }
+            }
+            queue.forEach(rooms::remove);// найдены, но в индекс не попали
+            complete = queue.isEmpty();
+        }
+
+        @Override
+        boolean covers(Room r) {
+            return rooms.contains(r);
+        }
+
+        @Override
+        boolean complete() {
+            return complete;
+        }
+
+        @Override
+        boolean knows(String key) {
+            return byName.containsKey(key);
+        }
+
+        // Путь может идти через комнату r
+        boolean allows(Room r) {
+            return complete || rooms.contains(Layered.bottom(r));
+        }
+
+        // Комнаты с названием name для обхода в ширину; множество строится при первом запросе названия
+        Set<Room> targets(String name) {
+            return targets.computeIfAbsent(name, k -> new HashSet<>(byName.get(k)));
+        }
+    }
+
+    // Индекс CompactWorld по номерам: название (в нижнем регистре) -> номер ключа, строка мира -> ключ
+    // и комнаты каждого ключа одним массивом (rooms[first[k]..first[k + 1]) — номера по возрастанию).
+    // Около 4 байт на комнату и бит на достижимость; Room-представлений не заводит
+    private static final class IdIndex extends Index {
+        // Поле расстояний строится, когда обход в ширину к названию просмотрел больше FIELD_AFTER комнат;
+        // полей не больше FIELDS — по байту на комнату каждое
+        private static final int FIELD_AFTER = 1 << 14, FIELDS = 8;
+
+        private final CompactWorld world;
+        private final long[] reachable;
+        private final Map<String, Integer> keys = new HashMap<>();
+        private final int[] nameKeys;// номер строки мира -> ключ; -1 — не название достижимой комнаты
+        private final int[] first;
+        private final int[] rooms;
+        private final boolean symmetric;// у каждого выхода есть обратный: поле строится обходом от целей
+        private final Map<Integer, Field> fields = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Field> eldest) {
+                return size() > FIELDS;
+            }
+        };
+
+        IdIndex(CompactWorld world, int start) {
+            this.world = world;
+            int n = world.size();
+            reachable = new long[(n + 63) >>> 6];
+            int[] queue = new int[n];
+            queue[0] = start;
+            reachable[start >>> 6] |= 1L << start;
+            int tail = 1;
+            boolean symmetric = true;
+            for (int head = 0; head < tail; head++) {
+                int id = queue[head];
+                for (int d = 0; d < 4; d++) {
+                    int to = world.exit(id, d);
+                    if (to < 0) continue;
+                    symmetric &= world.exit(to, d ^ 1) == id;
+                    if ((reachable[to >>> 6] & 1L << to) != 0) continue;
+                    reachable[to >>> 6] |= 1L << to;
+                    queue[tail++] = to;
+                }
+            }
+            this.symmetric = symmetric;
+            List<String> strings = world.strings();
+            nameKeys = new int[strings.size()];
+            Arrays.fill(nameKeys, -1);
+            int[] counts = new int[16];
+            for (int i = 0; i < tail; i++) {
+                int name = world.nameId(queue[i]);
+                if (nameKeys[name] < 0) nameKeys[name] = keys.computeIfAbsent(key(strings.get(name)), k -> keys.size());
+                int k = nameKeys[name];
+                if (k == counts.length) counts = Arrays.copyOf(counts, k * 2);
+                counts[k]++;
+            }
+            first = new int[keys.size() + 1];
+            for (int k = 0; k < keys.size(); k++) first[k + 1] = first[k] + counts[k];
+            rooms = new int[tail];
+            int[] fill = Arrays.copyOf(first, keys.size());
+            for (int id = 0; id < n; id++) {
+                if ((reachable[id >>> 6] & 1L << id) != 0) rooms[fill[nameKeys[world.nameId(id)]]++] = id;
+            }
+        }
+
+        @Override
+        boolean covers(Room r) {
+            if (CompactWorld.of(r) != world) return false;
+            int id = CompactWorld.id(r);
+            return (reachable[id >>> 6] & 1L << id) != 0;
+        }
+
+        @Override
+        boolean complete() {
+            return true;
+        }
+
+        @Override
+        boolean knows(String key) {
+            return keys.containsKey(key);
+        }
+
+        // Номер ключа названия; -1 — комнат с таким названием нет
+        int keyOf(String name) {
+            return keys.getOrDefault(name, -1);
+        }
+
+        int count(int key) {
+            return first[key + 1] - first[key];
+        }
+
+        int firstRoom(int key) {
+            return rooms[first[key]];
+        }
+
+        // Название комнаты id — ключ key (по текущему названию в мире)
+        boolean named(int id, int key) {
+            int name = world.nameId(id);
+            return name < nameKeys.length && nameKeys[name] == key;
+        }
+
+        // Поле расстояний до ключа key по замкам мира сейчас; null — его нет и build == false
+        // или его не построить (выходы не обратимы)
+        Field field(int key, boolean build) {
+            if (!symmetric) return null;
+            int version = world.lockChanges();
+            Field f;
+            synchronized (fields) {
+                f = fields.get(key);
+            }
+            if (f != null && f.version == version) return f;
+            if (!build) return null;
+            f = new Field(this, key, version);// строится без блокировки: два одновременных поля одинаковы
+            synchronized (fields) {
+                fields.put(key, f);
+            }
+            return f;
+        }
+    }
+
+    // Поле расстояний до ближайшей комнаты с названием: у каждой комнаты — направление первого шага кратчайшего
+    // пути к ней по незапертым комнатам (TARGET — сама цель, NONE — не дойти). Строится одним обходом
+    // в ширину сразу от всех незапертых целей по обратным выходам, после этого маршрут из любой комнаты —
+    // просто шаги по полю. Запертая комната получает направление (из неё можно начать путь), но дальше
+    // обход через неё не идёт. Поле верно, пока в мире не поменялся ни один замок (version)
+    private static final class Field {
+        private static final byte NONE = -1, TARGET = 4;
+
+        private final byte[] next;
+        private final int version;
+        private final int[] locked;// запертые комнаты мира: у сессии слоя может быть открыта любая из них
+
+        Field(IdIndex index, int key, int version) {
+            CompactWorld world = index.world;
+            this.version = version;
+            next = new byte[world.size()];
+            Arrays.fill(next, NONE);
+            int[] queue = new int[world.size()];
+            int tail = 0;
+            for (int i = index.first[key]; i < index.first[key + 1]; i++) {
+                int id = index.rooms[i];
+                if (world.isLocked(id)) continue;
+                next[id] = TARGET;
+                queue[tail++] = id;
+            }
+            for (int head = 0; head < tail; head++) {
+                int id = queue[head];
+                for (int d = 0; d < 4; d++) {
+                    int from = world.exit(id, d);// выходы обратимы: из from в id ведёт выход d ^ 1
+                    if (from < 0 || next[from] != NONE) continue;
+                    next[from] = (byte) (d ^ 1);
+                    if (!world.isLocked(from)) queue[tail++] = from;
+                }
+            }
+            int n = 0;
+            int[] ids = new int[16];
+            for (int id = 0; id < world.size(); id++) {
+                if (!world.isLocked(id)) continue;
+                if (n == ids.length) ids = Arrays.copyOf(ids, n * 2);
+                ids[n++] = id;
+            }
+            locked = Arrays.copyOf(ids, n);
+        }
+
+        // Маршрут от src; null — не дойти
+        List<String> route(CompactWorld world, int src) {
+            if (next[src] == NONE) return null;
+            ArrayList<String> dirs = new ArrayList<>();
+            for (int id = src; next[id] != TARGET; ) {
+                int d = next[id];
+                dirs.add(CompactWorld.DIRS[d]);
+                id = world.exit(id, d);
+            }
+            return List.copyOf(dirs);
+        }
+
+        // Поле годится для сессии from: в её слоях не открыта ни одна дверь, запертая в мире (иначе кратчайший
+        // путь может идти через неё). Слои только открывают двери мира, запереть открытую они не могут
+        boolean fits(CompactWorld world, Room from) {
+            if (!(from instanceof Layered)) return true;
+            for (int id : locked) if (!Navigator.locked(world, from, id)) return false;
+            return true;
+        }
+    }
+
+    private final Index index;
+    private final CommonWorld common;
+    private int commonLocks;// CommonWorld.lockChanges, при котором заполнялся кэш маршрутов
+    private final Ids ids = new Ids();
+    private final Map<RouteKey, List<String>> routes = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<RouteKey, List<String>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    // Индексирует все комнаты, достижимые из start (запертые тоже)
+    public Navigator(Room start) {
+        SharedWorld shared = SharedWorld.of(start);
+        common = CommonWorld.of(start);
+        Room base = Layered.bottom(start);
+        index = shared != null ? shared.index() : common != null ? common.index()
+                : Index.of(base, base.isPaged() ? PAGED_ROOMS : Integer.MAX_VALUE);
+        if (common != null) commonLocks = common.lockChanges();
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // Комната из этого мира? После load мир другой и индекс надо строить заново
+    public boolean covers(Room r) {
+        return index.covers(Layered.bottom(r));
+    }
+
+    // false — проиндексирована только окрестность (мир с диска): комната с названием может быть дальше
+    public boolean complete() {
+        return index.complete();
+    }
+
+    public boolean knows(String name) {
+        return index.knows(key(name));
+    }
+
+    public void invalidateRoutes() {
+        routes.clear();
+    }
+
+    // Направления от from до ближайшей комнаты с таким названием; null — не дойти (всё за запертыми дверями).
+    // Цели — комнаты базы: комната сессии r совпадает с целью, если Layered.bottom(r) — она
+    public List<String> route(Room from, String name) {
+        if (common != null && common.lockChanges() != commonLocks) {
+            routes.clear();// дверь открыл другой игрок
+            commonLocks = common.lockChanges();
+        }
+        RouteKey k = new RouteKey(from, key(name));
+        List<String> cached = routes.get(k);
+        if (cached != null) return cached == UNREACHABLE ? null : cached;
+        List<String> route = index instanceof IdIndex ids ? route(ids, from, k.name()) : route((RoomIndex) index, from, k.name());
+        routes.put(k, route == null ? UNREACHABLE : route);
+        return route;
+    }
+
+    private List<String> route(RoomIndex index, Room from, String name) {
+        List<Room> targets = index.byName.getOrDefault(name, List.of());
+        if (targets.isEmpty()) return null;
+        boolean single = targets.size() == 1 && from.hasPosition() && targets.getFirst().hasPosition();
+        return single ? aStar(index, from, targets.getFirst()) : bfs(index, from, index.targets(name));
+    }
+
+    // Единственная цель на сетке — A*; несколько — обход в ширину, а если он затянулся, строится поле
+    // расстояний названия (одно на все сессии и все комнаты старта), и дальше маршрут к названию — шаги по полю
+    private List<String> route(IdIndex index, Room from, String name) {
+        int key = index.keyOf(name);
+        if (key < 0) return null;
+        CompactWorld world = index.world;
+        int src = CompactWorld.id(Layered.bottom(from));
+        if (index.named(src, key)) return List.of();// уже на месте, даже если комната заперта в мире
+        Field field = index.field(key, false);
+        if (field != null && field.fits(world, from)) return field.route(world, src);
+        if (index.count(key) == 1 && world.gridWidth() > 0) return ids.aStar(world, from, src, index.firstRoom(key));
+        List<String> route = ids.bfs(world, from, src, index, key, IdIndex.FIELD_AFTER);
+        if (route != Ids.GAVE_UP) return route;
+        field = index.field(key, true);
+        if (field != null && field.fits(world, from)) return field.route(world, src);
+        return ids.bfs(world, from, src, index, key, Integer.MAX_VALUE);
+    }
+
+    private static List<String> bfs(RoomIndex index, Room from, Set<Room> targets) {
+        Map<Room, Room> parent = new HashMap<>();
+        Map<Room, String> via = new HashMap<>();
+        ArrayDeque<Room> queue = new ArrayDeque<>();
+        parent.put(from, from);
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            Room r = queue.poll();
+            if (targets.contains(Layered.bottom(r))) return path(from, r, parent, via);
+            for (Map.Entry<String, Room> e : r.getNeighbors().entrySet()) {
+                Room n = e.getValue();
+                if (n.isLocked() || parent.containsKey(n) || !index.allows(n)) continue;
+                parent.put(n, r);
+                via.put(n, e.getKey());
+                queue.add(n);
+            }
+        }
+        return null;
+    }
+
+    // При равных f раньше берём узел с большим g: на открытой сетке ничьих много, и без этого A*
+    // обходит весь прямоугольник между стартом и целью вместо узкой полосы вдоль пути
+    private static List<String> aStar(RoomIndex index, Room from, Room target) {
+        record Node(Room room, int g, int f) {
+        }
+        Map<Room, Integer> dist = new HashMap<>();
+        Map<Room, Room> parent = new HashMap<>();
+        Map<Room, String> via = new HashMap<>();
+        PriorityQueue<Node> open = new PriorityQueue<>(
+                Comparator.comparingInt(Node::f).thenComparing(Comparator.comparingInt(Node::g).reversed()));
+        dist.put(from, 0);
+        parent.put(from, from);
+        open.add(new Node(from, 0, manhattan(from, target)));
+        while (!open.isEmpty()) {
+            Node cur = open.poll();
+            Room r = cur.room();
+            int g = cur.g();
+            if (g > dist.get(r)) continue;// устаревшая запись очереди
+            if (Layered.bottom(r).equals(target)) return path(from, r, parent, via);
+            for (Map.Entry<String, Room> e : r.getNeighbors().entrySet()) {
+                Room n = e.getValue();
+                if (n.isLocked() || !index.allows(n)) continue;
+                Integer old = dist.get(n);
+                if (old != null && old <= g + 1) continue;
+                dist.put(n, g + 1);
+                parent.put(n, r);
+                via.put(n, e.getKey());
+                open.add(new Node(n, g + 1, g + 1 + manhattan(n, target)));
+            }
+        }
+        return null;
+    }
+
+    private static int manhattan(Room a, Room b) {
+        return Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY());
+    }
+
+    private static List<String> path(Room from, Room to, Map<Room, Room> parent, Map<Room, String> via) {
+        ArrayList<String> dirs = new ArrayList<>();
+        for (Room r = to; !r.equals(from); r = parent.get(r)) dirs.add(via.get(r));
+        Collections.reverse(dirs);
+        return List.copyOf(dirs);
+    }
+
+    // Заперта ли для сессии комната id, если путь ищется из from: замок берётся у верхнего слоя, в котором
+    // у комнаты уже есть представление (новые не заводятся), иначе — из базы
+    private static boolean locked(CompactWorld world, Room from, int id) {
+        if (!(from instanceof Layered)) return world.isLocked(id);
+        Room bottom = world.existingRoom(id);
+        if (bottom == null) return world.isLocked(id);// без представления в базе нет и представлений в слоях
+        for (Room r = from; r instanceof Layered l; r = l.base()) {
+            Room v = l.existing(bottom);
+            if (v != null) return v.isLocked();
+        }
+        return bottom.isLocked();
+    }
+
+    // Поиск по номерам комнат CompactWorld — то же, что aStar и bfs. Массивы живут вместе с Navigator
+    // (он у каждой сессии свой) и растут до самого большого поиска
+    private static final class Ids {
+        // bfs бросил поиск, просмотрев limit комнат
+        static final List<String> GAVE_UP = Collections.unmodifiableList(new ArrayList<>(0));
+
+        private final Visited visited = new Visited();
+        private long[] heapKeys = new long[256];
+        private int[] heapIds = new int[256];
+        private int heapSize;
+        private int[] queue = new int[256];
+
+        // Ключ очереди: f в старших битах, ~g в младших — при равных f раньше узел с большим g, как в aStar
+        List<String> aStar(CompactWorld world, Room from, int src, int target) {
+            int width = world.gridWidth();
+            visited.clear();
+            heapSize = 0;
+            visited.put(src, src, -1, 0);
+            push(manhattan(src, target, width), 0, src);
+            while (heapSize > 0) {
+                long key = heapKeys[0];
+                int id = heapIds[0];
+                pop();
+                int g = ~(int) key;
+                if (g > visited.g[visited.find(id)]) continue;// устаревшая запись очереди
+                if (id == target) return path(src, target);
+                for (int d = 0; d < 4; d++) {
+                    int n = world.exit(id, d);
+                    if (n < 0 || locked(world, from, n)) continue;
+                    int slot = visited.find(n);
+                    if (slot >= 0 && visited.g[slot] <= g + 1) continue;
+                    visited.put(n, id, d, g + 1);
+                    push(g + 1 + manhattan(n, target, width), g + 1, n);
+                }
+            }
+            return null;
+        }
+
+        // Ближайшая комната с ключом key; GAVE_UP — просмотрено limit комнат, а цели нет
+        List<String> bfs(CompactWorld world, Room from, int src, IdIndex index, int key, int limit) {
+            visited.clear();
+            visited.put(src, src, -1, 0);
+            queue[0] = src;
+            for (int head = 0, tail = 1; head < tail; head++) {
+                if (head == limit) return GAVE_UP;
+                int id = queue[head];
+                if (index.named(id, key)) return path(src, id);
+                for (int d = 0; d < 4; d++) {
+                    int n = world.exit(id, d);
+                    if (n < 0 || visited.find(n) >= 0 || locked(world, from, n)) continue;
+                    visited.put(n, id, d, 0);
+                    if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+                    queue[tail++] = n;
+                }
+            }
+            return null;
+        }
+
+        private static int manhattan(int a, int b, int width) {
+            return Math.abs(a % width - b % width) + Math.abs(a / width - b / width);
+        }
+
+        private List<String> path(int src, int to) {
+            ArrayList<String> dirs = new ArrayList<>();
+            for (int id = to; id != src; ) {
+                int slot = visited.find(id);
+                dirs.add(CompactWorld.DIRS[visited.dir[slot]]);
+                id = visited.parent[slot];
+            }
+            Collections.reverse(dirs);
+            return List.copyOf(dirs);
+        }
+
+        // Двоичная куча (heapKeys, heapIds)
+        private void push(int f, int g, int id) {
+            if (heapSize == heapKeys.length) {
+                heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+                heapIds = Arrays.copyOf(heapIds, heapSize * 2);
+            }
+            long key = (long) f << 32 | ~g & 0xFFFFFFFFL;
+            int i = heapSize++;
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (heapKeys[p] <= key) break;
+                heapKeys[i] = heapKeys[p];
+                heapIds[i] = heapIds[p];
+                i = p;
+            }
+            heapKeys[i] = key;
+            heapIds[i] = id;
+        }
+
+        private void pop() {
+            long key = heapKeys[--heapSize];
+            int id = heapIds[heapSize];
+            int i = 0;
+            for (int c = 1; c < heapSize; c = i * 2 + 1) {
+                if (c + 1 < heapSize && heapKeys[c + 1] < heapKeys[c]) c++;
+                if (heapKeys[c] >= key) break;
+                heapKeys[i] = heapKeys[c];
+                heapIds[i] = heapIds[c];
+                i = c;
+            }
+            heapKeys[i] = key;
+            heapIds[i] = id;
+        }
+    }
+
+    // Просмотренные комнаты: открытая адресация id -> родитель, направление из него, g. Очистка стоит столько,
+    // сколько слотов; после большого поиска таблица заводится заново маленькой
+    private static final class Visited {
+        private static final int SMALL = 1 << 10;
+
+        private int[] keys;// id + 1; 0 — пустой слот
+        int[] parent, g;
+        byte[] dir;
+        private int size, mask;
+
+        Visited() {
+            allocate(SMALL);
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            parent = new int[capacity];
+            g = new int[capacity];
+            dir = new byte[capacity];
+            mask = capacity - 1;
+            size = 0;
+        }
+
+        void clear() {
+            if (keys.length > SMALL << 6) allocate(SMALL);
+            else if (size > 0) Arrays.fill(keys, 0);
+            size = 0;
+        }
+
+        private int slot(int id) {
+            int h = id * 0x9E3779B9;
+            return (h ^ h >>> 16) & mask;
+        }
+
+        // Слот комнаты id; -1 — не просмотрена
+        int find(int id) {
+            for (int i = slot(id); ; i = i + 1 & mask) {
+                if (keys[i] == id + 1) return i;
+                if (keys[i] == 0) return -1;
+            }
+        }
+
+        void put(int id, int from, int d, int dist) {
+            if ((size + 1) * 2 > keys.length) grow();
+            int i = slot(id);
+            while (keys[i] != 0 && keys[i] != id + 1) i = i + 1 & mask;
+            if (keys[i] == 0) {
+                keys[i] = id + 1;
+                size++;
+            }
+            parent[i] = from;
+            dir[i] = (byte) d;
+            g[i] = dist;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys, oldParent = parent, oldG = g;
+            byte[] oldDir = dir;
+            allocate(oldKeys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) put(oldKeys[i] - 1, oldParent[i], oldDir[i], oldG[i]);
+            }
+        }
+    }
+}
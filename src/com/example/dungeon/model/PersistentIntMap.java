@@ -0,0 +1,95 @@
+package com.example.dungeon.model;
+
+import java.util.function.ObjIntConsumer;
+
+// Неизменяемое отображение int -> V с общими частями между версиями: префиксное дерево по 5 бит ключа,
+// в узле — битовая маска занятых веток и плотный массив только этих веток (как HAMT, но ключ сам служит хэшем).
+// with() копирует только путь от корня до ключа — не больше 7 узлов по 32 ссылки, остальное дерево общее
+// со старой версией, поэтому хранить много версий стоит памяти пропорционально изменениям.
+final class PersistentIntMap<V> {
+    private static final int BITS = 5, MASK = (1 << BITS) - 1;
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(new Node(0, new Object[0]), 0);
+
+    private record Leaf(int key, Object value) {
+    }
+
+    private record Node(int bitmap, Object[] slots) {
+    }
+
+    private final Node root;
+    private final int size;
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = 1 << ((key >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) return null;
+            Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (slot instanceof Leaf leaf) return leaf.key == key ? (V) leaf.value : null;
+            node = (Node) slot;
+        }
+    }
+
+    // Все пары (значение, ключ); порядок — по младшим битам ключа
+    void forEach(ObjIntConsumer<V> action) {
+        forEach(root, action);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEach(Node node, ObjIntConsumer<V> action) {
+        for (Object slot : node.slots) {
+            if (slot instanceof Leaf leaf) action.accept((V) leaf.value, leaf.key);
+            else forEach((Node) slot, action);
+        }
+    }
+
+    // Новая версия, где key -> value (value не null); эта версия не меняется
+    PersistentIntMap<V> with(int key, V value) {
+        boolean[] added = new boolean[1];
+        Node r = with(root, 0, key, value, added);
+        return new PersistentIntMap<>(r, added[0] ? size + 1 : size);
+    }
+
+    private static Node with(Node node, int shift, int key, Object value, boolean[] added) {
+        int bit = 1 << ((key >>> shift) & MASK);
+        int i = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, i);
+            slots[i] = new Leaf(key, value);
+            System.arraycopy(node.slots, i, slots, i + 1, node.slots.length - i);
+            added[0] = true;
+            return new Node(node.bitmap | bit, slots);
+        }
+        Object slot = node.slots[i];
+        Object replaced;
+        if (slot instanceof Node child) {
+            replaced = with(child, shift + BITS, key, value, added);
+        } else if (((Leaf) slot).key == key) {
+            replaced = new Leaf(key, value);
+        } else {
+            // две разные ветки с одинаковым префиксом — расходятся на следующих битах
+            Leaf old = (Leaf) slot;
+            Node pair = with(new Node(0, new Object[0]), shift + BITS, old.key, old.value, new boolean[1]);
+            replaced = with(pair, shift + BITS, key, value, added);
+        }
+        Object[] slots = node.slots.clone();
+        slots[i] = replaced;
+        return new Node(node.bitmap, slots);
+    }
+}
@@ -1,10 +1,8 @@
 package com.example.dungeon.model;
 
-import java.util.*;
-
 public class Player extends Entity {
     private int attack;
-    private final List<Item> inventory = new ArrayList<>();
+    private final ItemContainer inventory = new ItemContainer();
 
     public Player(String name, int hp, int attack) {
         super(name, hp);
@@ -19,7 +17,7 @@ public class Player extends Entity {
         this.attack = attack;
     }
 
-    public List<Item> getInventory() {
+    public ItemContainer getInventory() {
         return inventory;
     }
 }
@@ -1,30 +1,104 @@
 package com.example.dungeon.model;
 
 import java.util.*;
+import java.util.function.ObjIntConsumer;
 
+// Состояние комнаты меняется только её методами (addItem/removeItem, setNeighbor/removeNeighbor, setMonster,
+// setLocked): getItems() и getNeighbors() отдают неизменяемые представления. Поэтому describe() может хранить
+// готовый текст и строить его заново, только когда что-то из этого поменялось.
+// Имя и уровень монстра, которые попадают в описание, после создания монстра не меняются.
 public class Room {
     private final String name;
     private final String description;
-    private final Map<String, Room> neighbors = new HashMap<>();
-    private final List<Item> items = new ArrayList<>();
+    private final Map<String, Room> neighbors;
+    private final ItemContainer items;
     private Monster monster;
     private int locked = 0;// 0 - открыта, 1 - закрыта
+    private Map<String, Room> neighborsView;
+    private List<Item> itemsView;
+    private String rendered;// кэш describe(); null — нужно построить заново
+    private List<Room> entrances;// комнаты, чей выход ведёт сюда (по разу на выход); null — таких нет
 
     public Room(String name, String description) {
         this.name = name;
         this.description = description;
+        this.neighbors = new HashMap<>();
+        this.items = new ItemContainer();
+    }
+
+    // Для комнат-представлений, чьи данные лежат снаружи (CompactWorld): подкласс переопределяет все геттеры/сеттеры
+    protected Room() {
+        this.name = null;
+        this.description = null;
+        this.neighbors = null;
+        this.items = null;
     }
 
     public String getName() {
         return name;
     }
 
+    public String getDescription() {
+        return description;
+    }
+
     public Map<String, Room> getNeighbors() {
-        return neighbors;
+        if (neighborsView == null) neighborsView = Collections.unmodifiableMap(neighbors);
+        return neighborsView;
+    }
+
+    public void setNeighbor(String dir, Room room) {
+        Room old = neighbors.put(dir, Objects.requireNonNull(room));
+        if (old != room) {
+            if (old != null) old.entrances.remove(this);
+            if (room.entrances == null) room.entrances = new ArrayList<>(4);
+            room.entrances.add(this);
+        }
+        invalidate();
+    }
+
+    public void removeNeighbor(String dir) {
+        Room old = neighbors.remove(dir);
+        if (old == null) return;
+        old.entrances.remove(this);
+        invalidate();
+    }
+
+    // Комнаты с выходом в эту. Обход всего мира идёт и по ним: иначе комната, из которой можно только выйти,
+    // пропала бы из сохранения. Обычные Room ведут этот список в setNeighbor/removeNeighbor; представления
+    // CompactWorld и RegionStore обратных проходов не знают и отдают пустой список
+    public Collection<Room> getEntrances() {
+        return entrances == null ? List.of() : Collections.unmodifiableList(entrances);
     }
 
     public List<Item> getItems() {
-        return items;
+        if (itemsView == null) itemsView = Collections.unmodifiableList(items);
+        return itemsView;
+    }
+
+    public void addItem(Item item) {
+        addItem(item, 1);
+    }
+
+    public void addItem(Item item, int count) {
+        items.add(item, count);
+        invalidate();
+    }
+
+    public boolean removeItem(Item item) {
+        if (!items.remove(item)) return false;
+        invalidate();
+        return true;
+    }
+
+    // Предметы стопками (предмет, количество) — для сохранения без перебора каждой штуки
+    public void forEachItemStack(ObjIntConsumer<Item> action) {
+        items.forEachStack(action);
+    }
+
+    // Предмет комнаты по имени без учёта регистра или null; комнаты-представления ищут в своём хранилище
+    public Item findItem(CharSequence name) {
+        return items.find(name);
     }
 
     public Monster getMonster() {
@@ -33,10 +107,46 @@ public class Room {
 
     public void setMonster(Monster m) {
         this.monster = m;
+        invalidate();
+    }
+
+    // Монстр для чтения (описание, сохранение): его нельзя менять. Представление общего мира отдаёт здесь
+    // монстра базы без копии, а getMonster — свою копию, которую бой и таймеры могут менять
+    protected Monster peekMonster() {
+        return getMonster();
+    }
+
+    // Удар по монстру m этой комнаты: HP уменьшается на damage, убитый монстр убирается, его добыча остаётся здесь.
+    // Возвращает HP до удара или 0, если m в комнате уже нет (убит или ушёл). Проверка и удар — один вызов,
+    // поэтому в CommonWorld удары двух игроков не теряются и победитель у монстра один
+    public int strikeMonster(Monster m, int damage) {
+        if (m == null || getMonster() != m) return 0;
+        int before = m.getHp();
+        m.setHp(before - damage);
+        if (m.getHp() <= 0) {
+            setMonster(null);
+            if (m.getLoot() != null) addItem(m.getLoot());
+        }
+        return before;
     }
 
+    // Текст для look и move; строится один раз и переиспользуется, пока комната не изменится
     public String describe() {
-        StringBuilder sb = new StringBuilder(name + ": " + description);
+        String s = rendered;
+        if (s == null) rendered = s = render();
+        return s;
+    }
+
+    // Сбрасывает кэш describe(); вызывают все мутаторы
+    protected void invalidate() {
+        rendered = null;
+    }
+
+    protected String render() {
+        List<Item> items = getItems();
+        Monster monster = peekMonster();
+        Map<String, Room> neighbors = getNeighbors();
+        StringBuilder sb = new StringBuilder(getName() + ": " + getDescription());
         if (!items.isEmpty()) {
             sb.append("\nПредметы: ").append(String.join(", ", items.stream().map(Item::getName).toList()));
         }
@@ -48,15 +158,36 @@ public class Room {
         }
         return sb.toString();
     }
+
+    // Комната мира, который не держится в памяти целиком (RegionStore): обход всего мира от неё читал бы
+    // с диска каждый регион, поэтому сохранение, goto и таймеры мира работают только с окрестностью игрока
+    public boolean isPaged() {
+        return false;
+    }
+
+    // Координаты есть только у комнат миров-сеток (CompactWorld.grid, RegionStore); по ним goto ищет путь через A*
+    public boolean hasPosition() {
+        return false;
+    }
+
+    public int getX() {
+        return 0;
+    }
+
+    public int getY() {
+        return 0;
+    }
+
     public int getLocked() {// добавлены методы на закрытие/открытие комнаты
         return locked;
     }
 
     public boolean isLocked() {
-        return locked == 1;// закрыта если 1
+        return getLocked() == 1;// закрыта если 1
     }
 
     public void setLocked(int locked) {
         this.locked = locked;
+        invalidate();
     }
 }
@@ -0,0 +1,58 @@
+package com.example.dungeon.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+// Состояние комнаты, снятое для сохранения в другом потоке: стопки предметов, копия монстра и замок.
+// После создания не меняется, поэтому его можно читать из любого потока
+public final class RoomSnapshot {
+    private static final Item[] NO_ITEMS = new Item[0];
+    private static final int[] NO_COUNTS = new int[0];
+
+    private final Item[] items;
+    private final int[] counts;
+    private final Monster monster;
+    private final int locked;
+
+    // Массивы не копируются: вызывающий их больше не меняет
+    RoomSnapshot(Item[] items, int[] counts, Monster monster, int locked) {
+        this.items = items;
+        this.counts = counts;
+        this.monster = monster;
+        this.locked = locked;
+    }
+
+    // Копия текущего состояния комнаты r
+    public static RoomSnapshot of(Room r) {
+        List<Item> items = new ArrayList<>(2);
+        List<Integer> counts = new ArrayList<>(2);
+        r.forEachItemStack((item, count) -> {
+            items.add(item);
+            counts.add(count);
+        });
+        return new RoomSnapshot(items.isEmpty() ? NO_ITEMS : items.toArray(NO_ITEMS),
+                counts.isEmpty() ? NO_COUNTS : counts.stream().mapToInt(Integer::intValue).toArray(),
+                copy(r.peekMonster()), r.getLocked());
+    }
+
+    static Monster copy(Monster m) {
+        if (m == null) return null;
+        Monster c = new Monster(m.getName(), m.getLevel(), m.getMaxHp(), m.getLoot());
+        c.setHp(m.getHp());
+        return c;
+    }
+
+    public void forEachItemStack(ObjIntConsumer<Item> action) {
+        for (int i = 0; i < items.length; i++) action.accept(items[i], counts[i]);
+    }
+
+    // Копия монстра снимка; её не меняют
+    public Monster monster() {
+        return monster;
+    }
+
+    public int locked() {
+        return locked;
+    }
+}
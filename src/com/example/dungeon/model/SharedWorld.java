@@ -0,0 +1,233 @@
+package com.example.dungeon.model;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+
+// Один мир на все сессии: базовый граф комнат с начальным содержимым никто не меняет, а каждая сессия
+// видит его через свой слой (newSession). Комната слоя — представление базовой комнаты, которое хранит
+// только отличия этой сессии: свою копию предметов после первого take/drop, своего (или убитого) монстра,
+// открытую ключом дверь. Всё остальное читается из базы. Слой заводит представления только для комнат,
+// до которых сессия добралась, поэтому память сессии растёт с тем, что игрок посетил и изменил, а не с миром.
+// Обходы всего мира идут по базе, а не по представлениям: сохранение берёт у слоя только отличия (Layered),
+// индекс названий для goto строится по базе один раз на все сессии (index). Монстр базы копируется в слой
+// только для боя и таймеров (getMonster); описание комнаты читает монстра базы (peekMonster).
+// Базу после создания SharedWorld нельзя менять напрямую: её читают потоки всех сессий без блокировок.
+public final class SharedWorld {
+    private final Room start;
+    private Navigator.Index index;
+
+    public SharedWorld(Room start) {
+        this.start = Objects.requireNonNull(start);
+    }
+
+    // Стартовая комната нового слоя; у каждого вызова свой слой
+    public Room newSession() {
+        return new Overlay(this).view(start);
+    }
+
+    // Общий мир под комнатой r (r может быть и представлением слоя над слоем общего мира, как у --undo);
+    // null — r не из общего мира
+    static SharedWorld of(Room r) {
+        for (; r instanceof Layered l; r = l.base()) {
+            if (r instanceof View v) return v.overlay.world;
+        }
+        return null;
+    }
+
+    public static boolean isShared(Room r) {
+        return of(r) != null;
+    }
+
+    // Индекс названий базы для goto — один на все сессии, строится при первом goto
+    synchronized Navigator.Index index() {
+        if (index == null) index = Navigator.Index.of(start);
+        return index;
+    }
+
+    // Слой одной сессии: базовая комната -> её представление (одно на комнату, чтобы работало сравнение по ссылке)
+    private static final class Overlay {
+        private final SharedWorld world;
+        private final Map<Room, View> views = new HashMap<>();
+
+        Overlay(SharedWorld world) {
+            this.world = world;
+        }
+
+        View view(Room base) {
+            View v = views.get(base);
+            if (v == null) views.put(base, v = new View(this, base));
+            return v;
+        }
+
+        // Изменённые комнаты слоя; у незатронутых представлений состояние как в базе
+        void forEachChange(BiConsumer<Room, RoomSnapshot> action) {
+            for (View v : views.values()) {
+                if (v.items != null || v.monsterCopied || v.locked >= 0) action.accept(v.base, RoomSnapshot.of(v));
+            }
+        }
+    }
+
+    private static final class View extends Room implements Layered {
+        private final Overlay overlay;
+        private final Room base;
+        private Map<String, Room> neighbors;
+        private ItemContainer items;// null — предметы как в базе
+        private List<Item> itemsView;
+        private Monster monster;
+        private boolean monsterCopied;// monster уже свой: копия базового, убит (null) или пришёл извне
+        private int locked = -1;// -1 — как в базе
+
+        View(Overlay overlay, Room base) {
+            this.overlay = overlay;
+            this.base = base;
+        }
+
+        @Override
+        public Room base() {
+            return base;
+        }
+
+        @Override
+        public void forEachChange(BiConsumer<Room, RoomSnapshot> action) {
+            overlay.forEachChange(action);
+        }
+
+        @Override
+        public Room existing(Room bottom) {
+            Room b = base instanceof Layered l ? l.existing(bottom) : bottom;
+            return b == null ? null : overlay.views.get(b);
+        }
+
+        @Override
+        public String getName() {
+            return base.getName();
+        }
+
+        @Override
+        public String getDescription() {
+            return base.getDescription();
+        }
+
+        @Override
+        public Map<String, Room> getNeighbors() {
+            if (neighbors == null) neighbors = new MappedNeighbors(base.getNeighbors(), overlay::view);
+            return neighbors;
+        }
+
+        @Override
+        public Collection<Room> getEntrances() {
+            Collection<Room> from = base.getEntrances();
+            if (from.isEmpty()) return from;
+            List<Room> mapped = new ArrayList<>(from.size());
+            for (Room r : from) mapped.add(overlay.view(r));
+            return mapped;
+        }
+
+        @Override
+        public void setNeighbor(String dir, Room room) {
+            throw new UnsupportedOperationException("Проходы общего мира не меняются");
+        }
+
+        @Override
+        public void removeNeighbor(String dir) {
+            throw new UnsupportedOperationException("Проходы общего мира не меняются");
+        }
+
+        @Override
+        public List<Item> getItems() {
+            if (items == null) return base.getItems();
+            if (itemsView == null) itemsView = Collections.unmodifiableList(items);
+            return itemsView;
+        }
+
+        // Своя копия предметов при первом изменении
+        private ItemContainer own() {
+            if (items == null) {
+                items = new ItemContainer();
+                base.forEachItemStack(items::add);
+            }
+            return items;
+        }
+
+        @Override
+        public void addItem(Item item, int count) {
+            own().add(item, count);
+            invalidate();
+        }
+
+        @Override
+        public boolean removeItem(Item item) {
+            if (items == null && !base.getItems().contains(item)) return false;
+            if (!own().remove(item)) return false;
+            invalidate();
+            return true;
+        }
+
+        @Override
+        public void forEachItemStack(ObjIntConsumer<Item> action) {
+            if (items != null) items.forEachStack(action);
+            else base.forEachItemStack(action);
+        }
+
+        // Без base.findItem: тот строит индекс имён в контейнере базы, а базу читают все сессии сразу
+        @Override
+        public Item findItem(CharSequence name) {
+            if (items != null) return items.find(name);
+            Item[] found = new Item[1];
+            base.forEachItemStack((item, count) -> {
+                if (found[0] == null && ItemContainer.sameName(name, item.getName())) found[0] = item;
+            });
+            return found[0];
+        }
+
+        @Override
+        protected Monster peekMonster() {
+            return monsterCopied ? monster : base.getMonster();
+        }
+
+        // Монстр базы общий, а бой и таймеры меняют его HP — сессия получает свою копию при первом обращении
+        @Override
+        public Monster getMonster() {
+            if (!monsterCopied) {
+                Monster m = base.getMonster();
+                monster = m == null ? null : new Monster(m.getName(), m.getLevel(), m.getHp(), m.getLoot());
+                monsterCopied = true;
+            }
+            return monster;
+        }
+
+        @Override
+        public void setMonster(Monster m) {
+            monster = m;
+            monsterCopied = true;
+            invalidate();
+        }
+
+        @Override
+        public int getLocked() {
+            return locked >= 0 ? locked : base.getLocked();
+        }
+
+        @Override
+        public void setLocked(int locked) {
+            this.locked = locked;
+            invalidate();
+        }
+
+        @Override
+        public boolean hasPosition() {
+            return base.hasPosition();
+        }
+
+        @Override
+        public int getX() {
+            return base.getX();
+        }
+
+        @Override
+        public int getY() {
+            return base.getY();
+        }
+    }
+}
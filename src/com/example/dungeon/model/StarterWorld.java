@@ -0,0 +1,34 @@
+package com.example.dungeon.model;
+
+// Описание встроенного мира DungeonMini. Game только создаёт сессии: свежую копию мира для каждой
+// сессии строит build().
+public final class StarterWorld {
+    public static final int PLAYER_HP = 20, PLAYER_ATTACK = 5;
+
+    private StarterWorld() {
+    }
+
+    // Новая копия мира; возвращает стартовую комнату (Площадь)
+    public static Room build() {
+        Room square = new Room("Площадь", "Каменная площадь с фонтаном.");
+        Room forest = new Room("Лес", "Шелест листвы и птичий щебет.");
+        Room cave = new Room("Пещера", "Темно и сыро.");
+        Room castle = new Room("Замок", "Мощные ворота возвышаются и уходят к небу.");
+        Room lawn = new Room("Поляна", "В центре огромный камень.");
+        square.setNeighbor("north", forest);
+        forest.setNeighbor("south", square);
+        forest.setNeighbor("east", cave);
+        forest.setNeighbor("west", lawn);
+        cave.setNeighbor("west", forest);
+        castle.setNeighbor("east", square);// новая локация
+        lawn.setNeighbor("east", forest);// новая локация
+        square.setNeighbor("west", castle);// новая локация
+
+        forest.addItem(ItemCatalog.SMALL_POTION);
+        forest.setMonster(new Monster("Волк", 1, 8, ItemCatalog.MEDIUM_POTION));
+        cave.setMonster(new Monster("Змея", 2, 16, ItemCatalog.STEEL_BLADE));// новый монстр
+        lawn.addItem(ItemCatalog.CASTLE_KEY);// кладем ключ на поляну
+        castle.setLocked(1);// запираем замок на ключ
+        return square;
+    }
+}
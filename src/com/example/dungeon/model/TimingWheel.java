@@ -0,0 +1,134 @@
+package com.example.dungeon.model;
+
+// Иерархическое колесо таймеров: LEVELS уровней по 64 ячейки. Таймер с дедлайном d лежит на уровне,
+// где старшая отличающаяся от now группа из 6 бит, в ячейке с цифрой d этого уровня. Когда младшие
+// цифры now обнуляются, ячейка верхнего уровня «осыпается» на нижние, а ячейка уровня 0 срабатывает.
+// Если дедлайн отличается от now выше 24 бит (перешёл границу 2^24), таймер ложится на верхний уровень
+// в ячейку своей цифры: задержка меньше 2^24, поэтому эта ячейка осыпается не позже дедлайна.
+// schedule и cancel — O(1), tick — O(сработавших + осыпавшихся таймеров), от общего числа таймеров не зависит.
+// Таймеры — узлы двусвязного списка внутри самих объектов: повторная постановка периодического таймера
+// ничего не выделяет. Колесо однопоточное: его двигает и в него пишет только поток команд сессии.
+public final class TimingWheel<C> {
+    private static final int BITS = 6, SLOTS = 1 << BITS, MASK = SLOTS - 1, LEVELS = 4;
+    public static final long MAX_DELAY = (1L << (BITS * LEVELS)) - 1;
+
+    // Событие мира; подкласс решает в fire, ставить ли себя снова
+    public abstract static class Timer<C> {
+        private long deadline;
+        private Timer<C> prev, next;
+
+        public final boolean isScheduled() {
+            return next != null;
+        }
+
+        public final long deadline() {
+            return deadline;
+        }
+
+        public final void cancel() {
+            if (next == null) return;
+            prev.next = next;
+            next.prev = prev;
+            prev = next = null;
+        }
+
+        protected abstract void fire(C ctx, TimingWheel<C> wheel);
+    }
+
+    // Голова кольцевого списка ячейки
+    private static final class Head<C> extends Timer<C> {
+        Head() {
+            link(this, this);
+        }
+
+        @Override
+        protected void fire(C ctx, TimingWheel<C> wheel) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private final Timer<C>[][] slots;// головы ячеек (Head)
+    private long now;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel() {
+        slots = (Timer<C>[][]) new Timer<?>[LEVELS][SLOTS];
+        for (Timer<C>[] level : slots) {
+            for (int i = 0; i < SLOTS; i++) level[i] = new Head<>();
+        }
+    }
+
+    public long now() {
+        return now;
+    }
+
+    // Сколько таймеров стоит в колесе
+    public int size() {
+        return size;
+    }
+
+    // Ставит таймер через delay тиков (минимум 1); уже стоящий таймер переставляется
+    public void schedule(Timer<C> t, long delay) {
+        if (delay > MAX_DELAY) throw new IllegalArgumentException("Слишком большая задержка: " + delay);
+        if (t.isScheduled()) cancel(t);
+        t.deadline = now + Math.max(1, delay);
+        place(t);
+        size++;
+    }
+
+    public void cancel(Timer<C> t) {
+        if (!t.isScheduled()) return;
+        t.cancel();
+        size--;
+    }
+
+    // Один тик: осыпает ячейки верхних уровней, у которых начался период, и запускает таймеры с дедлайном now
+    public void tick(C ctx) {
+        now++;
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((now & ((1L << (BITS * level)) - 1)) == 0) cascade(slots[level][(int) (now >>> (BITS * level)) & MASK]);
+        }
+        Timer<C> head = slots[0][(int) now & MASK];
+        while (head.next != head) {
+            Timer<C> t = head.next;
+            t.cancel();
+            size--;
+            t.fire(ctx, this);
+        }
+    }
+
+    public void advance(C ctx, long ticks) {
+        for (long i = 0; i < ticks; i++) tick(ctx);
+    }
+
+    public void clear() {
+        for (Timer<C>[] level : slots) {
+            for (Timer<C> head : level) {
+                while (head.next != head) head.next.cancel();
+            }
+        }
+        size = 0;
+    }
+
+    private void cascade(Timer<C> head) {
+        while (head.next != head) {
+            Timer<C> t = head.next;
+            t.cancel();
+            place(t);
+        }
+    }
+
+    private void place(Timer<C> t) {
+        long diff = t.deadline ^ now;
+        int level = diff == 0 ? 0 : Math.min(LEVELS - 1, (63 - Long.numberOfLeadingZeros(diff)) / BITS);
+        Timer<C> head = slots[level][(int) (t.deadline >>> (BITS * level)) & MASK];
+        link(head.prev, t);
+        link(t, head);
+    }
+
+    private static <C> void link(Timer<C> a, Timer<C> b) {
+        a.next = b;
+        b.prev = a;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.dungeon.model;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Процедурный мир по seed: сетка width x height в CompactWorld (id = y * width + x, старт — комната 0),
+// разбитая на регионы region x region.
+//  - Регионы соединены остовным деревом (случайный обход в глубину от стартового региона): у каждого региона,
+//    кроме стартового, ровно один проход к родителю. Клетка региона у этого прохода — ворота; с долей locks
+//    они заперты, а ключ лежит в случайной комнате родителя. Родитель целиком достижим раньше ворот ребёнка,
+//    поэтому ключ всегда можно взять до двери, которую он открывает.
+//  - Внутри региона — лабиринт: остовное дерево обходом в глубину плюс доля loops лишних проходов (петли).
+//    Проходы двусторонние (CompactWorld.link).
+//  - Монстр — в доле monsters комнат, его уровень растёт с расстоянием от старта (по клеткам сетки, |x| + |y|)
+//    до maxLevel; у половины монстров добыча. Зелья лежат в доле items комнат, чем дальше — тем сильнее.
+// Регионы строятся параллельно задачами fork-join. У каждого региона свой SplittableRandom, отщеплённый
+// от корневого в порядке номеров, и регион пишет только свои комнаты (и выход из соседней клетки родителя
+// в свои ворота, который сам родитель не трогает), поэтому при одном seed мир одинаков при любом числе ядер.
+// Замки и ключи расставляются после, в одном потоке: биты locked у соседних комнат лежат в общих словах.
+public final class WorldGenerator {
+    private static final int[] DX = {0, 0, 1, -1}, DY = {-1, 1, 0, 0};// по CompactWorld.NORTH...WEST
+    private static final String[][] ROOMS = {
+            {"Коридор", "Сырые каменные стены."},
+            {"Зал", "Высокие своды теряются в темноте."},
+            {"Пещера", "Темно и сыро."},
+            {"Грот", "С потолка капает вода."},
+            {"Склеп", "Вдоль стен — старые гробницы."},
+            {"Галерея", "На стенах выцветшие фрески."}};
+    private static final String[] MONSTERS = {"Крыса", "Волк", "Змея", "Гоблин", "Скелет", "Орк", "Тролль", "Вампир", "Голем", "Дракон"};
+    private static final Potion LARGE_POTION = ItemCatalog.potion("Большое зелье", 20);
+    private static final Key GATE_KEY = ItemCatalog.key("Ключ от ворот");
+
+    // Доли — от 0 до 1
+    public record Config(int width, int height, int region, double loops, double locks, double monsters,
+                         double items, int maxLevel) {
+        public static Config square(int side) {
+            return new Config(side, side, 64, 0.05, 0.3, 0.06, 0.04, 10);
+        }
+    }
+
+    public record Generated(CompactWorld world, int regions, int lockedDoors, long monsters, long items) {
+    }
+
+    private final Config config;
+    private final CompactWorld world;
+    private final int regionsX, regionsY;
+    private final SplittableRandom[] randoms;
+    private final int[] parentDir;// направление из региона к родителю в дереве регионов; -1 у стартового
+    private final int[] gates, keys;// запертые ворота региона и комната родителя с ключом; -1 — ворота открыты
+    private final int[] monsters, items;
+    private final int[] texts;// номера строк ROOMS в таблице CompactWorld: название, описание, ...
+    private final int gateName, gateDesc, startName, startDesc;
+
+    private WorldGenerator(Config config, long seed) {
+        if (config.width() <= 0 || config.height() <= 0 || config.region() <= 0 || config.maxLevel() <= 0) {
+            throw new IllegalArgumentException("Размеры мира, региона и maxLevel должны быть больше нуля");
+        }
+        if ((long) config.width() * config.height() > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Слишком большой мир: " + config.width() + "x" + config.height());
+        }
+        this.config = config;
+        this.world = CompactWorld.blank(config.width(), config.height());
+        this.regionsX = (config.width() + config.region() - 1) / config.region();
+        this.regionsY = (config.height() + config.region() - 1) / config.region();
+        int regions = regionsX * regionsY;
+        this.parentDir = new int[regions];
+        this.gates = new int[regions];
+        this.keys = new int[regions];
+        this.monsters = new int[regions];
+        this.items = new int[regions];
+        Arrays.fill(gates, -1);
+        texts = new int[ROOMS.length * 2];
+        for (int i = 0; i < ROOMS.length; i++) {
+            texts[i * 2] = world.intern(ROOMS[i][0]);
+            texts[i * 2 + 1] = world.intern(ROOMS[i][1]);
+        }
+        gateName = world.intern("Ворота");
+        gateDesc = world.intern("Тяжёлая дверь окована железом.");
+        startName = world.intern("Площадь");
+        startDesc = world.intern("Каменная площадь с фонтаном.");
+        SplittableRandom root = new SplittableRandom(seed);
+        regionTree(root.split());
+        randoms = new SplittableRandom[regions];
+        for (int r = 0; r < regions; r++) randoms[r] = root.split();
+    }
+
+    public static Generated generate(Config config, long seed) {
+        return generate(config, seed, ForkJoinPool.commonPool());
+    }
+
+    public static Generated generate(Config config, long seed, ForkJoinPool pool) {
+        WorldGenerator gen = new WorldGenerator(config, seed);
+        pool.invoke(gen.new Regions(0, gen.randoms.length));
+        int locked = 0;
+        long items = 0, monsters = 0;
+        for (int r = 0; r < gen.randoms.length; r++) {
+            if (gen.gates[r] >= 0) {
+                gen.world.setLocked(gen.gates[r], true);
+                gen.world.items(gen.keys[r]).add(GATE_KEY);
+                locked++;
+            }
+            items += gen.items[r];
+            monsters += gen.monsters[r];
+        }
+        gen.world.room(0);// массив представлений заводится здесь, до того как мир начнут читать сессии
+        return new Generated(gen.world, gen.randoms.length, locked, monsters, items + locked);
+    }
+
+    // Остовное дерево регионов: обход в глубину от стартового со случайным выбором соседа
+    private void regionTree(SplittableRandom rnd) {
+        int regions = parentDir.length;
+        Arrays.fill(parentDir, -1);
+        boolean[] seen = new boolean[regions];
+        int[] stack = new int[regions], options = new int[4];
+        int top = 0;
+        seen[0] = true;
+        stack[top++] = 0;
+        while (top > 0) {
+            int r = stack[top - 1];
+            int rx = r % regionsX, ry = r / regionsX, k = 0;
+            for (int d = 0; d < 4; d++) {
+                int nx = rx + DX[d], ny = ry + DY[d];
+                if (nx >= 0 && nx < regionsX && ny >= 0 && ny < regionsY && !seen[ny * regionsX + nx]) options[k++] = d;
+            }
+            if (k == 0) {
+                top--;
+                continue;
+            }
+            int d = options[rnd.nextInt(k)];
+            int next = (ry + DY[d]) * regionsX + rx + DX[d];
+            parentDir[next] = d ^ 1;// north <-> south, east <-> west
+            seen[next] = true;
+            stack[top++] = next;
+        }
+    }
+
+    // Регионы делятся пополам до одного на задачу (задачи fork-join не сериализуются)
+    @SuppressWarnings("serial")
+    private final class Regions extends RecursiveAction {
+        private final int from, to;
+
+        Regions(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                region(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Regions(from, mid), new Regions(mid, to));
+        }
+    }
+
+    private void region(int r) {
+        SplittableRandom rnd = randoms[r];
+        int size = config.region(), width = config.width();
+        int x0 = r % regionsX * size, y0 = r / regionsX * size;
+        int rw = Math.min(size, width - x0), rh = Math.min(size, config.height() - y0);
+        int n = rw * rh;
+
+        // лабиринт: остовное дерево обходом в глубину из случайной клетки
+        boolean[] seen = new boolean[n];
+        int[] stack = new int[n], options = new int[4];
+        int top = 0, first = rnd.nextInt(n);
+        seen[first] = true;
+        stack[top++] = first;
+        while (top > 0) {
+            int c = stack[top - 1];
+            int cx = c % rw, cy = c / rw, k = 0;
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + DX[d], ny = cy + DY[d];
+                if (nx >= 0 && nx < rw && ny >= 0 && ny < rh && !seen[ny * rw + nx]) options[k++] = d;
+            }
+            if (k == 0) {
+                top--;
+                continue;
+            }
+            int d = options[rnd.nextInt(k)];
+            int nx = cx + DX[d], ny = cy + DY[d];
+            world.link((y0 + cy) * width + x0 + cx, d, (y0 + ny) * width + x0 + nx);
+            seen[ny * rw + nx] = true;
+            stack[top++] = ny * rw + nx;
+        }
+        // петли: лишние проходы на юг и на восток внутри региона
+        for (int cy = 0; cy < rh; cy++) {
+            for (int cx = 0; cx < rw; cx++) {
+                int id = (y0 + cy) * width + x0 + cx;
+                if (cy + 1 < rh && world.exit(id, CompactWorld.SOUTH) < 0 && rnd.nextDouble() < config.loops()) {
+                    world.link(id, CompactWorld.SOUTH, id + width);
+                }
+                if (cx + 1 < rw && world.exit(id, CompactWorld.EAST) < 0 && rnd.nextDouble() < config.loops()) {
+                    world.link(id, CompactWorld.EAST, id + 1);
+                }
+            }
+        }
+
+        // ворота: проход из случайной клетки края к родителю; у соседних регионов одного ряда одна высота,
+        // одного столбца — одна ширина, поэтому клетка по ту сторону всегда есть
+        int gate = -1;
+        int pd = parentDir[r];
+        if (pd >= 0) {
+            int along = pd == CompactWorld.NORTH || pd == CompactWorld.SOUTH ? rnd.nextInt(rw) : rnd.nextInt(rh);
+            int gx = switch (pd) {
+                case CompactWorld.EAST -> x0 + rw - 1;
+                case CompactWorld.WEST -> x0;
+                default -> x0 + along;
+            };
+            int gy = switch (pd) {
+                case CompactWorld.SOUTH -> y0 + rh - 1;
+                case CompactWorld.NORTH -> y0;
+                default -> y0 + along;
+            };
+            gate = gy * width + gx;
+            world.link(gate, pd, gate + DY[pd] * width + DX[pd]);
+            if (rnd.nextDouble() < config.locks()) {
+                int parent = r + DY[pd] * regionsX + DX[pd];
+                int px0 = parent % regionsX * size, py0 = parent / regionsX * size;
+                int pw = Math.min(size, width - px0), ph = Math.min(size, config.height() - py0);
+                gates[r] = gate;
+                keys[r] = (py0 + rnd.nextInt(ph)) * width + px0 + rnd.nextInt(pw);
+            }
+        }
+
+        // комнаты: название, монстр, зелье
+        int maxDist = Math.max(1, width + config.height() - 2);
+        for (int cy = 0; cy < rh; cy++) {
+            for (int cx = 0; cx < rw; cx++) {
+                int x = x0 + cx, y = y0 + cy, id = y * width + x;
+                int t = rnd.nextInt(ROOMS.length) * 2;
+                if (id == 0) world.setText(id, startName, startDesc);
+                else if (id == gates[r]) world.setText(id, gateName, gateDesc);
+                else world.setText(id, texts[t], texts[t + 1]);
+                if (id == 0) continue;// на старте никого и ничего
+                int level = 1 + (int) ((long) (x + y) * (config.maxLevel() - 1) / maxDist);
+                if (rnd.nextDouble() < config.monsters()) {
+                    String name = MONSTERS[(level - 1) * MONSTERS.length / config.maxLevel()];
+                    Item loot = rnd.nextBoolean() ? loot(level, rnd) : null;
+                    world.setMonster(id, new Monster(name, level, 8 * level, loot));
+                    monsters[r]++;
+                }
+                if (rnd.nextDouble() < config.items()) {
+                    world.items(id).add(potion(level));
+                    items[r]++;
+                }
+            }
+        }
+    }
+
+    private Potion potion(int level) {
+        if (level * 3 <= config.maxLevel()) return ItemCatalog.SMALL_POTION;
+        if (level * 3 <= config.maxLevel() * 2) return ItemCatalog.MEDIUM_POTION;
+        return LARGE_POTION;
+    }
+
+    private Item loot(int level, SplittableRandom rnd) {
+        if (level * 3 > config.maxLevel() * 2 && rnd.nextInt(4) == 0) return ItemCatalog.STEEL_BLADE;
+        return potion(level);
+    }
+}
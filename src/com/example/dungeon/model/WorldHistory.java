@@ -0,0 +1,433 @@
+package com.example.dungeon.model;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+// История версий сессии для undo/redo. Исходный мир сессии больше не меняется: комнаты сессии — представления,
+// а каждая версия неизменяема — PersistentIntMap номер комнаты -> состояние комнаты (предметы, монстр, замок)
+// только для комнат, отличающихся от исходного мира, плюс игрок (HP, атака, инвентарь), номер текущей комнаты
+// и счёт. Команда меняет рабочее состояние представлений; commit после команды переносит в новую версию только
+// тронутые комнаты (копия пути в дереве), а неизменённые комнаты и инвентарь остаются общими с прошлой версией.
+// undo/redo — переход по списку версий за O(1): представления перечитывают своё состояние из версии лениво,
+// при первом обращении после перехода. Хранятся последние depth версий.
+// Номер комнате выдаётся при первом обращении к ней через историю (старт — 0), поэтому подключение истории
+// не обходит мир: память и время растут с тем, куда дошла сессия, а не с размером мира.
+public final class WorldHistory {
+    private final List<Room> base = new ArrayList<>();// комнаты исходного мира по номерам
+    private final Map<Room, Integer> index = new HashMap<>();
+    private final List<View> views = new ArrayList<>();
+    private final int depth;
+    private final List<Version> versions = new ArrayList<>();
+    private final List<View> dirty = new ArrayList<>();// представления, тронутые после последнего commit
+    private int pos;// текущая версия
+    private int epoch;// растёт при undo/redo: состояние представлений из прежней версии устарело
+
+    private record Version(PersistentIntMap<RoomState> rooms, PlayerState player, int current, int score) {
+    }
+
+    private record PlayerState(int hp, int attack, Stacks inventory) {
+    }
+
+    private record MonsterState(String name, int level, int hp, int maxHp, Item loot) {
+        static MonsterState of(Monster m) {
+            return m == null ? null : new MonsterState(m.getName(), m.getLevel(), m.getHp(), m.getMaxHp(), m.getLoot());
+        }
+
+        Monster create() {
+            Monster m = new Monster(name, level, maxHp, loot);
+            m.setHp(hp);
+            return m;
+        }
+    }
+
+    private record RoomState(Stacks items, MonsterState monster, int locked) {
+        static RoomState of(Room r) {
+            return new RoomState(Stacks.of(r::forEachItemStack), MonsterState.of(r.getMonster()), r.getLocked());
+        }
+
+        RoomSnapshot snapshot() {
+            return new RoomSnapshot(items.items, items.counts, monster == null ? null : monster.create(), locked);
+        }
+    }
+
+    // Неизменяемые стопки предметов (предмет, количество)
+    private static final class Stacks {
+        static final Stacks EMPTY = new Stacks(new Item[0], new int[0]);
+        final Item[] items;
+        final int[] counts;
+        private List<Item> list;
+
+        private Stacks(Item[] items, int[] counts) {
+            this.items = items;
+            this.counts = counts;
+        }
+
+        static Stacks of(Consumer<ObjIntConsumer<Item>> source) {
+            List<Item> items = new ArrayList<>(2);
+            List<Integer> counts = new ArrayList<>(2);
+            source.accept((item, count) -> {
+                items.add(item);
+                counts.add(count);
+            });
+            if (items.isEmpty()) return EMPTY;
+            return new Stacks(items.toArray(new Item[0]), counts.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        // Те же стопки — та же версия, если ничего не поменялось (объект переиспользуется)
+        Stacks reuse(Stacks old) {
+            return old != null && Arrays.equals(items, old.items) && Arrays.equals(counts, old.counts) ? old : this;
+        }
+
+        void forEach(ObjIntConsumer<Item> action) {
+            for (int i = 0; i < items.length; i++) action.accept(items[i], counts[i]);
+        }
+
+        ItemContainer toContainer() {
+            ItemContainer c = new ItemContainer();
+            forEach(c::add);
+            return c;
+        }
+
+        boolean contains(Item item) {
+            for (Item i : items) if (i.equals(item)) return true;
+            return false;
+        }
+
+        Item find(CharSequence name) {
+            for (Item i : items) if (ItemContainer.sameName(name, i.getName())) return i;
+            return null;
+        }
+
+        List<Item> list() {
+            if (list == null) list = Collections.unmodifiableList(toContainer());
+            return list;
+        }
+    }
+
+    private WorldHistory(Room start, int depth) {
+        this.depth = depth;
+        view(start);
+    }
+
+    // Подключает историю к сессии: мир, начиная с текущей комнаты, становится исходным (его больше нельзя менять
+    // напрямую), текущая комната заменяется представлением, текущее состояние — первая версия
+    public static WorldHistory attach(GameState state, int depth) {
+        WorldHistory h = new WorldHistory(state.getCurrent(), depth);
+        state.setCurrent(h.view(0));
+        state.setHistory(h);
+        h.versions.add(new Version(PersistentIntMap.empty(), h.player(state.getPlayer(), null), 0, state.getScore()));
+        return h;
+    }
+
+    // Комната принадлежит этой истории (после load у сессии другой мир)
+    public boolean owns(Room room) {
+        return room instanceof View v && v.history() == this;
+    }
+
+    public int undoable() {
+        return pos;
+    }
+
+    public int redoable() {
+        return versions.size() - 1 - pos;
+    }
+
+    public int versions() {
+        return versions.size();
+    }
+
+    // Сколько комнат в текущей версии отличается от исходного мира
+    public int changedRooms() {
+        return versions.get(pos).rooms().size();
+    }
+
+    // Новая версия после команды. Если изменился только счёт (look, inventory), версия не заводится —
+    // счёт обновляется у текущей. Новая версия отбрасывает отменённые (redo больше нельзя)
+    public void commit(GameState state) {
+        Version last = versions.get(pos);
+        PersistentIntMap<RoomState> rooms = last.rooms();
+        for (View v : dirty) {
+            RoomState s = v.capture();
+            if (!s.equals(v.saved)) {
+                rooms = rooms.with(v.index, s);
+                v.saved = s;
+            }
+            v.dirty = false;
+        }
+        dirty.clear();
+        PlayerState player = player(state.getPlayer(), last.player());
+        int current = ((View) state.getCurrent()).index;
+        Version next = new Version(rooms, player, current, state.getScore());
+        if (rooms == last.rooms() && player == last.player() && current == last.current()) {
+            versions.set(pos, next);
+            return;
+        }
+        versions.subList(pos + 1, versions.size()).clear();
+        versions.add(next);
+        if (versions.size() > depth + 1) versions.removeFirst();
+        pos = versions.size() - 1;
+    }
+
+    // Откат на n версий назад (не дальше первой); возвращает, на сколько откатились
+    public int undo(GameState state, int n) {
+        int steps = Math.min(n, pos);
+        if (steps > 0) restore(state, pos - steps);
+        return steps;
+    }
+
+    public int redo(GameState state, int n) {
+        int steps = Math.min(n, redoable());
+        if (steps > 0) restore(state, pos + steps);
+        return steps;
+    }
+
+    private void restore(GameState state, int to) {
+        pos = to;
+        epoch++;
+        for (View v : dirty) v.dirty = false;
+        dirty.clear();
+        Version v = versions.get(pos);
+        Player p = state.getPlayer();
+        p.setHp(v.player().hp());
+        p.setAttack(v.player().attack());
+        p.getInventory().clear();
+        v.player().inventory().forEach(p.getInventory()::add);
+        state.setCurrent(view(v.current()));
+        state.setScore(v.score());
+        state.setTimers(null);// таймеры ссылались на монстров и комнаты другой версии
+        state.invalidateRoutes();
+    }
+
+    // Отличия сессии от исходного мира для сохранения: комнаты текущей версии, а поверх них — рабочее состояние
+    // представлений, тронутых после commit, и тех, чей монстр выдан наружу (регенерация меняет его без commit)
+    private void forEachChange(BiConsumer<Room, RoomSnapshot> action) {
+        versions.get(pos).rooms().forEach((s, i) -> action.accept(base.get(i), s.snapshot()));
+        for (View v : views) {
+            if (v != null && v.loaded == epoch && (v.dirty || v.monsterLoaded)) {
+                action.accept(base.get(v.index), v.capture().snapshot());
+            }
+        }
+    }
+
+    private PlayerState player(Player p, PlayerState last) {
+        Stacks inventory = Stacks.of(p.getInventory()::forEachStack).reuse(last == null ? null : last.inventory());
+        if (last != null && last.hp() == p.getHp() && last.attack() == p.getAttack() && last.inventory() == inventory) {
+            return last;
+        }
+        return new PlayerState(p.getHp(), p.getAttack(), inventory);
+    }
+
+    private View view(int i) {
+        View v = views.get(i);
+        if (v == null) views.set(i, v = new View(i));
+        return v;
+    }
+
+    private View view(Room baseRoom) {
+        Integer i = index.get(baseRoom);
+        if (i == null) {
+            i = base.size();
+            index.put(baseRoom, i);
+            base.add(baseRoom);
+            views.add(null);
+        }
+        return view(i);
+    }
+
+    private final class View extends Room implements Layered {
+        final int index;
+        private Map<String, Room> neighbors;
+        private int loaded = -1;// эпоха, для которой прочитано состояние
+        RoomState saved;// состояние комнаты в текущей версии
+        private ItemContainer items;// своя копия после изменения; null — saved.items
+        private Monster monster;
+        private boolean monsterLoaded;
+        private int locked;
+        boolean dirty;
+
+        View(int index) {
+            this.index = index;
+        }
+
+        WorldHistory history() {
+            return WorldHistory.this;
+        }
+
+        @Override
+        public Room base() {
+            return base.get(index);
+        }
+
+        @Override
+        public void forEachChange(BiConsumer<Room, RoomSnapshot> action) {
+            WorldHistory.this.forEachChange(action);
+        }
+
+        @Override
+        public Room existing(Room bottom) {
+            Room b = base() instanceof Layered l ? l.existing(bottom) : bottom;
+            Integer i = b == null ? null : WorldHistory.this.index.get(b);
+            return i == null ? null : view(i);
+        }
+
+        // Состояние из текущей версии, если оно ещё не прочитано после undo/redo
+        private void sync() {
+            if (loaded == epoch) return;
+            RoomState s = versions.get(pos).rooms().get(index);
+            saved = s != null ? s : RoomState.of(base());
+            items = null;
+            monster = null;
+            monsterLoaded = false;
+            locked = saved.locked();
+            dirty = false;
+            loaded = epoch;
+            invalidate();
+        }
+
+        private void touch() {
+            if (!dirty) {
+                dirty = true;
+                WorldHistory.this.dirty.add(this);
+            }
+        }
+
+        RoomState capture() {
+            Stacks s = items == null ? saved.items() : Stacks.of(items::forEachStack).reuse(saved.items());
+            return new RoomState(s, monsterLoaded ? MonsterState.of(monster) : saved.monster(), locked);
+        }
+
+        @Override
+        public String getName() {
+            return base().getName();
+        }
+
+        @Override
+        public String getDescription() {
+            return base().getDescription();
+        }
+
+        @Override
+        public Map<String, Room> getNeighbors() {
+            if (neighbors == null) neighbors = new MappedNeighbors(base().getNeighbors(), WorldHistory.this::view);
+            return neighbors;
+        }
+
+        @Override
+        public Collection<Room> getEntrances() {
+            Collection<Room> from = base().getEntrances();
+            if (from.isEmpty()) return from;
+            List<Room> mapped = new ArrayList<>(from.size());
+            for (Room r : from) mapped.add(view(r));
+            return mapped;
+        }
+
+        @Override
+        public void setNeighbor(String dir, Room room) {
+            throw new UnsupportedOperationException("Проходы мира с историей не меняются");
+        }
+
+        @Override
+        public void removeNeighbor(String dir) {
+            throw new UnsupportedOperationException("Проходы мира с историей не меняются");
+        }
+
+        @Override
+        public List<Item> getItems() {
+            sync();
+            return items == null ? saved.items().list() : Collections.unmodifiableList(items);
+        }
+
+        private ItemContainer own() {
+            sync();
+            if (items == null) items = saved.items().toContainer();
+            touch();
+            return items;
+        }
+
+        @Override
+        public void addItem(Item item, int count) {
+            own().add(item, count);
+            invalidate();
+        }
+
+        @Override
+        public boolean removeItem(Item item) {
+            sync();
+            if (items == null && !saved.items().contains(item)) return false;
+            if (!own().remove(item)) return false;
+            invalidate();
+            return true;
+        }
+
+        @Override
+        public void forEachItemStack(ObjIntConsumer<Item> action) {
+            sync();
+            if (items != null) items.forEachStack(action);
+            else saved.items().forEach(action);
+        }
+
+        @Override
+        public Item findItem(CharSequence name) {
+            sync();
+            return items != null ? items.find(name) : saved.items().find(name);
+        }
+
+        // Монстр меняется снаружи (бой, регенерация), поэтому выданный монстр попадает в следующий commit
+        @Override
+        public Monster getMonster() {
+            sync();
+            if (!monsterLoaded) {
+                monster = saved.monster() == null ? null : saved.monster().create();
+                monsterLoaded = true;
+            }
+            if (monster != null) touch();
+            return monster;
+        }
+
+        @Override
+        public void setMonster(Monster m) {
+            sync();
+            monster = m;
+            monsterLoaded = true;
+            touch();
+            invalidate();
+        }
+
+        @Override
+        public int getLocked() {
+            sync();
+            return locked;
+        }
+
+        @Override
+        public void setLocked(int locked) {
+            sync();
+            this.locked = locked;
+            touch();
+            invalidate();
+        }
+
+        @Override
+        public String describe() {
+            sync();
+            return super.describe();
+        }
+
+        @Override
+        public boolean hasPosition() {
+            return base().hasPosition();
+        }
+
+        @Override
+        public int getX() {
+            return base().getX();
+        }
+
+        @Override
+        public int getY() {
+            return base().getY();
+        }
+    }
+}